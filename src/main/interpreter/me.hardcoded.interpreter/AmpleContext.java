@@ -3,9 +3,12 @@ package me.hardcoded.interpreter;
 import me.hardcoded.compiler.intermediate.inst.*;
 import me.hardcoded.compiler.parser.type.ValueType;
 import me.hardcoded.interpreter.value.Memory;
+import me.hardcoded.interpreter.value.Value;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +42,14 @@ class AmpleContext {
 			}
 		}
 		
+		for (AmpleFunc func : functions.values()) {
+			func.link(functions);
+		}
+		
+		for (AmpleFunc func : codeBlocks) {
+			func.link(functions);
+		}
+		
 		this.mainFunction = functions.get(mainRef);
 		this.memory = new Memory();
 	}
@@ -64,8 +75,39 @@ class AmpleContext {
 	}
 	
 	public static class AmpleFunc {
+		/**
+		 * Operand kinds. The kind is stored in the lowest bits of an operand and the index in the other bits
+		 */
+		public static final int REF = 0;
+		public static final int CONSTANT = 1;
+		public static final int STRING = 2;
+		public static final int LABEL = 3;
+		public static final int FUNCTION = 4;
+		public static final int KIND_BITS = 3;
+		public static final int KIND_MASK = (1 << KIND_BITS) - 1;
+		
+		/**
+		 * The amount of ints before the operands of an instruction. The opcode, the index of the instruction, the operand count
+		 * and the amount of labels between the instruction and the next instruction
+		 */
+		public static final int HEADER_SIZE = 4;
+		
 		private final Procedure procedure;
-		private final Map<InstRef, Integer> labels;
+		private final Inst[] instructions;
+		private final InstRef[] slotReferences;
+		private final int[] parameterSlots;
+		private final int[] code;
+		private final int[] operandTypes;
+		private final ValueType[] types;
+		private final int[] typeSizes;
+		private final int[] labels;
+		private final int entryLabels;
+		private final Value[] constants;
+		private final long[] constantValues;
+		private final boolean[] floatingConstants;
+		private final String[] strings;
+		private final InstRef[] functionReferences;
+		private AmpleFunc[] functions;
 		
 		public static int getTypeByteSize(ValueType type) {
 			return (type.getDepth() > 0) ? ValueType.getPointerSize() : (type.getSize() >> 3);
@@ -73,17 +115,145 @@ class AmpleContext {
 		
 		private AmpleFunc(Procedure procedure) {
 			this.procedure = procedure;
-			this.labels = new HashMap<>();
+			this.instructions = procedure.getInstructions().toArray(new Inst[0]);
 			
-			List<Inst> list = procedure.getInstructions();
-			for (int i = 0; i < list.size(); i++) {
-				Inst inst = list.get(i);
-				
+			// Each reference gets a slot inside the frame of the function
+			Map<InstRef, Integer> slots = new HashMap<>();
+			List<InstRef> parameters = procedure.getParameters();
+			if (parameters == null) {
+				parameters = List.of();
+			}
+			
+			this.parameterSlots = new int[parameters.size()];
+			for (int i = 0; i < parameters.size(); i++) {
+				parameterSlots[i] = getSlot(slots, parameters.get(i));
+			}
+			
+			// The amount of labels from each instruction to the next instruction that is not a label
+			int[] labelRuns = new int[instructions.length + 1];
+			for (int i = instructions.length - 1; i >= 0; i--) {
+				labelRuns[i] = instructions[i].getOpcode() == Opcode.LABEL ? labelRuns[i + 1] + 1 : 0;
+			}
+			
+			// Labels are not part of the code so they point to the instruction after them. Passing a label
+			// still counts as a step so each label also stores the amount of labels passed to reach that instruction
+			Map<InstRef, Integer> labelMap = new HashMap<>();
+			List<Integer> labelList = new ArrayList<>();
+			int codeSize = 0;
+			for (int i = 0; i < instructions.length; i++) {
+				Inst inst = instructions[i];
 				if (inst.getOpcode() == Opcode.LABEL) {
-					InstRef ref = inst.getRefParam(0).getReference();
-					labels.put(ref, i);
+					labelMap.put(inst.getRefParam(0).getReference(), labelList.size() / 2);
+					labelList.add(codeSize);
+					labelList.add(labelRuns[i]);
+				} else {
+					codeSize += HEADER_SIZE + inst.getParamCount();
+				}
+			}
+			
+			this.labels = labelList.stream().mapToInt(Integer::intValue).toArray();
+			this.entryLabels = labelRuns[0];
+			
+			List<Value> constantList = new ArrayList<>();
+			List<InstParam.Num> numberList = new ArrayList<>();
+			List<String> stringList = new ArrayList<>();
+			Map<InstRef, Integer> functionMap = new LinkedHashMap<>();
+			Map<ValueType, Integer> typeMap = new LinkedHashMap<>();
+			
+			this.code = new int[codeSize];
+			this.operandTypes = new int[codeSize];
+			Arrays.fill(operandTypes, -1);
+			int pc = 0;
+			for (int i = 0; i < instructions.length; i++) {
+				Inst inst = instructions[i];
+				Opcode opcode = inst.getOpcode();
+				if (opcode == Opcode.LABEL) {
+					continue;
+				}
+				
+				code[pc++] = opcode.ordinal();
+				code[pc++] = i;
+				code[pc++] = inst.getParamCount();
+				code[pc++] = labelRuns[i + 1];
+				
+				for (int j = 0; j < inst.getParamCount(); j++) {
+					InstParam param = inst.getParam(j);
+					
+					int kind;
+					int index;
+					if (isLabelParam(opcode, j)) {
+						kind = LABEL;
+						index = labelMap.get(inst.getRefParam(j).getReference());
+					} else if (opcode == Opcode.CALL && j == 1) {
+						kind = FUNCTION;
+						index = functionMap.computeIfAbsent(inst.getRefParam(j).getReference(), k -> functionMap.size());
+					} else if (param instanceof InstParam.Ref ref) {
+						kind = REF;
+						index = getSlot(slots, ref.getReference());
+					} else if (param instanceof InstParam.Num num) {
+						kind = CONSTANT;
+						index = constantList.size();
+						constantList.add(new Value.NumberValue(num.getSize().isFloating(), num.getValue()));
+						numberList.add(num);
+					} else if (param instanceof InstParam.Str str) {
+						kind = STRING;
+						index = stringList.size();
+						stringList.add(str.getValue());
+					} else {
+						throw new RuntimeException("Invalid param '" + param + "'");
+					}
+					
+					// The types are decoded once so the interpreter does not need to read the instruction
+					if (kind != LABEL && kind != FUNCTION) {
+						operandTypes[pc] = typeMap.computeIfAbsent(param.getSize(), k -> typeMap.size());
+					}
+					
+					code[pc++] = (index << KIND_BITS) | kind;
 				}
 			}
+			
+			this.constants = constantList.toArray(new Value[0]);
+			this.constantValues = new long[constants.length];
+			this.floatingConstants = new boolean[constants.length];
+			for (int i = 0; i < constants.length; i++) {
+				InstParam.Num num = numberList.get(i);
+				constantValues[i] = num.getValue();
+				floatingConstants[i] = num.getSize().isFloating();
+			}
+			this.types = typeMap.keySet().toArray(new ValueType[0]);
+			this.typeSizes = new int[types.length];
+			for (int i = 0; i < types.length; i++) {
+				typeSizes[i] = getTypeByteSize(types[i]);
+			}
+			this.strings = stringList.toArray(new String[0]);
+			this.functionReferences = functionMap.keySet().toArray(new InstRef[0]);
+			
+			this.slotReferences = new InstRef[slots.size()];
+			for (Map.Entry<InstRef, Integer> entry : slots.entrySet()) {
+				slotReferences[entry.getValue()] = entry.getKey();
+			}
+		}
+		
+		private static boolean isLabelParam(Opcode opcode, int index) {
+			return switch (opcode) {
+				case JMP -> index == 0;
+				case JZ, JNZ -> index == 1;
+				default -> false;
+			};
+		}
+		
+		private static int getSlot(Map<InstRef, Integer> slots, InstRef reference) {
+			return slots.computeIfAbsent(reference, k -> slots.size());
+		}
+		
+		/**
+		 * Resolve the functions called by this function
+		 */
+		private void link(Map<InstRef, AmpleFunc> functionMap) {
+			this.functions = new AmpleFunc[functionReferences.length];
+			for (int i = 0; i < functionReferences.length; i++) {
+				functions[i] = functionMap.get(functionReferences[i]);
+			}
 		}
 		
 		public int getParamCount() {
@@ -99,8 +269,94 @@ class AmpleContext {
 			return procedure.getParameters();
 		}
 		
-		public int getLabel(InstRef reference) {
-			return labels.get(reference);
+		/**
+		 * Returns the amount of slots inside the frame of this function
+		 */
+		public int getSlotCount() {
+			return slotReferences.length;
+		}
+		
+		/**
+		 * Returns the reference stored in a slot
+		 */
+		public InstRef getSlotReference(int slot) {
+			return slotReferences[slot];
+		}
+		
+		/**
+		 * Returns the slot of a parameter
+		 */
+		public int getParameterSlot(int index) {
+			return parameterSlots[index];
+		}
+		
+		/**
+		 * Returns the decoded instructions of this function. Each instruction starts with a header of
+		 * {@link #HEADER_SIZE} ints followed by the operands. Jumps refer to an entry of {@link #getLabels()}
+		 */
+		public int[] getCode() {
+			return code;
+		}
+		
+		/**
+		 * Returns the type index of each operand in {@link #getCode()}. Labels, functions and the
+		 * headers of the instructions do not have a type and are {@code -1}
+		 */
+		public int[] getOperandTypes() {
+			return operandTypes;
+		}
+		
+		public ValueType getType(int index) {
+			return types[index];
+		}
+		
+		/**
+		 * Returns the amount of bytes of a type
+		 */
+		public int getTypeSize(int index) {
+			return typeSizes[index];
+		}
+		
+		/**
+		 * Returns two ints for each label. The code offset of the instruction after the label and the
+		 * amount of labels that are passed to reach that instruction
+		 */
+		public int[] getLabels() {
+			return labels;
+		}
+		
+		/**
+		 * Returns the amount of labels before the first instruction
+		 */
+		public int getEntryLabels() {
+			return entryLabels;
+		}
+		
+		public Value getConstant(int index) {
+			return constants[index];
+		}
+		
+		/**
+		 * Returns the unboxed bits of a constant
+		 */
+		public long getConstantValue(int index) {
+			return constantValues[index];
+		}
+		
+		public boolean isFloatingConstant(int index) {
+			return floatingConstants[index];
+		}
+		
+		public String getString(int index) {
+			return strings[index];
+		}
+		
+		public AmpleFunc getFunction(int index) {
+			return functions[index];
+		}
+		
+		public Inst getInstruction(int index) {
+			return instructions[index];
 		}
 		
 		public List<Inst> getInstructions() {
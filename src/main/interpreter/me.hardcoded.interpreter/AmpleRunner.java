@@ -4,13 +4,12 @@ import me.hardcoded.compiler.intermediate.inst.*;
 import me.hardcoded.compiler.parser.type.Primitives;
 import me.hardcoded.compiler.parser.type.ValueType;
 import me.hardcoded.interpreter.AmpleContext.AmpleFunc;
+import me.hardcoded.interpreter.value.Memory;
 import me.hardcoded.interpreter.value.Value;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -18,6 +17,7 @@ import java.util.Map;
  */
 public class AmpleRunner {
 	private static final Logger LOGGER = LogManager.getLogger(AmpleRunner.class);
+	private static final Opcode[] OPCODES = Opcode.values();
 	
 	public void run(IntermediateFile instFile) throws AmpleInterpreterException {
 		AmpleContext context = new AmpleContext(instFile);
@@ -28,19 +28,27 @@ public class AmpleRunner {
 		}
 		
 		// Update the inst format
-		runFunction(main, new Locals(), context);
+		runFunction(main, new Frame(main), context);
 	}
 	
 	public void runRepl(ReplContext ctx) {
 		AmpleContext context = new AmpleContext(ctx.file);
 		if (ctx.local == null) {
-			ctx.local = new Locals();
+			ctx.local = new HashMap<>();
 		}
 		
 		// Should these share locals?
 		for (int i = ctx.index; i < context.getCodeBlocks(); i++) {
 			AmpleFunc block = context.getCodeBlock(i);
-			runFunction(block, new Locals(), ctx.local, context);
+			
+			// Each block has its own slots so the shared locals are copied in and out of the frame
+			Frame frame = new Frame(block);
+			frame.load(ctx.local);
+			try {
+				runFunction(block, frame, context);
+			} finally {
+				frame.store(ctx.local);
+			}
 		}
 		
 		ctx.index = context.getCodeBlocks();
@@ -49,7 +57,7 @@ public class AmpleRunner {
 	public static class ReplContext {
 		private IntermediateFile file;
 		private int index;
-		private Locals local;
+		private Map<InstRef, Value> local;
 		
 		public void setFile(IntermediateFile file) {
 			this.file = file;
@@ -61,176 +69,165 @@ public class AmpleRunner {
 		}
 	}
 	
-	public Value runFunction(AmpleFunc func, Locals params, AmpleContext context) {
+	/**
+	 * Run a function
+	 *
+	 * @param func    the function
+	 * @param local   the frame of the function with the parameters already set
+	 * @param context the context
+	 */
+	private Value runFunction(AmpleFunc func, Frame local, AmpleContext context) {
 		//LOGGER.debug("runFunction: {}", func);
 		
 		// TODO: Global variables
-		Locals local = new Locals();
-		local.add(params);
-		
-		return runFunction(func, params, local, context);
-	}
-	
-	private Value runFunction(AmpleFunc func, Locals params, Locals local, AmpleContext context) {
-		List<Inst> list = func.getInstructions();
-		List<Value.ArrayValue> allocatedList = new ArrayList<>();
+		int[] code = func.getCode();
+		int[] types = func.getOperandTypes();
+		int[] labels = func.getLabels();
+		Memory memory = context.getMemory();
+		int stackTop = memory.getStackTop();
 		
 		try {
-			int max = 100000;
-			int index = 0;
+			// Labels are not part of the code but they are still counted as steps
+			int max = 100000 - func.getEntryLabels();
+			int pc = 0;
 			while (--max > 0) {
-				if (index >= list.size()) {
+				if (pc >= code.length) {
 					// This means that a return was not present but for code blocks this is fine
 					break;
 				}
 				
-				Inst inst = list.get(index);
-				Opcode opcode = inst.getOpcode();
-				
-				if (opcode == Opcode.LABEL) {
-					index++;
-					continue;
-				}
+				Opcode opcode = OPCODES[code[pc]];
+				int paramCount = code[pc + 2];
+				int op = pc + AmpleFunc.HEADER_SIZE;
 				
 				//LOGGER.debug("{}", local);
-				//LOGGER.debug("  exec: {} ({})", index, inst);
+				//LOGGER.debug("  exec: {} ({})", pc, inst);
 				
 				switch (opcode) {
 					case MOV -> {
 						// 1st param is a always a reference
-						InstRef dst = inst.getRefParam(0).getReference();
-						
 						// 2nd param has more options
-						InstParam src = inst.getParam(1);
-						local.put(dst, convertFromParam(local, src, context));
+						moveOperand(local, index(code[op]), local, code[op + 1], func, context);
 					}
 					case CALL -> {
-						// 1st, 2nd param is a always a reference
-						InstRef dst = inst.getRefParam(0).getReference();
-						InstRef fun = inst.getRefParam(1).getReference();
-						AmpleFunc called = context.getFunction(fun);
-						Locals funParams = new Locals();
+						// 1st param is a always a reference, 2nd param is always a function
+						AmpleFunc called = func.getFunction(index(code[op + 1]));
+						Frame funParams = new Frame(called);
 						
-						int paramCount = called.getParamCount();
+						int calledParamCount = called.getParamCount();
 						
+						Value varargs = null;
+						int varargsStackTop = memory.getStackTop();
 						if (called.isVararg()) {
 							int varargSize = 0;
-							for (int i = 0; i < inst.getParamCount() - 2; i++) {
-								InstParam param = inst.getParam(i + 2);
-								if (i >= paramCount - 1) {
-									ValueType type = param.getSize();
-									int typeSize = (type.getDepth() > 0) ? ValueType.getPointerSize() : (type.getSize() >> 3);
-									varargSize += typeSize;
+							for (int i = 0; i < paramCount - 2; i++) {
+								if (i >= calledParamCount - 1) {
+									varargSize += func.getTypeSize(types[op + i + 2]);
 								} else {
-									InstRef paramRef = called.getParameters().get(i);
-									funParams.put(paramRef, convertFromParam(local, param, context));
+									moveOperand(funParams, called.getParameterSlot(i), local, code[op + i + 2], func, context);
 								}
 							}
 							
-							Value varargs = context.getMemory().allocate(varargSize);
+							varargs = memory.allocateStack(varargSize);
 							int offset = 0;
-							for (int i = paramCount - 1; i < inst.getParamCount() - 2; i++) {
-								InstParam param = inst.getParam(i + 2);
-								
-								ValueType type = param.getSize();
-								Value value = convertFromParam(local, param, context);
-								varargs.setIndex(offset, value, type);
-								
-								int typeSize = (type.getDepth() > 0) ? ValueType.getPointerSize() : (type.getSize() >> 3);
-								offset += typeSize;
+							for (int i = calledParamCount - 1; i < paramCount - 2; i++) {
+								int type = types[op + i + 2];
+								Value value = getOperand(local, code[op + i + 2], func, context);
+								varargs.setIndex(offset, value, func.getType(type));
+								offset += func.getTypeSize(type);
 							}
 							
 							// Set varargs param
-							funParams.put(called.getParameters().get(paramCount - 1), varargs);
-							context.getMemory().deallocate(varargs.getInteger());
+							funParams.put(called.getParameterSlot(calledParamCount - 1), varargs);
 						} else {
-							for (int i = 0; i < paramCount; i++) {
-								InstRef paramRef = called.getParameters().get(i);
-								funParams.put(paramRef, convertFromParam(local, inst.getParam(i + 2), context));
+							for (int i = 0; i < calledParamCount; i++) {
+								moveOperand(funParams, called.getParameterSlot(i), local, code[op + i + 2], func, context);
 							}
 						}
 						
 						Value result = runFunction(called, funParams, context);
-						local.put(dst, result);
+						if (varargs != null) {
+							// The varargs must stay allocated until the called function returns
+							memory.releaseStack(varargsStackTop);
+						}
+						
+						local.put(index(code[op]), result);
 					}
 					case RET -> {
-						if (inst.getParamCount() == 0) {
+						if (paramCount == 0) {
 							// Return unspecified
 							return new Value.NumberValue(0);
 						}
 						
-						InstParam src = inst.getParam(0);
-						return convertFromParam(local, src, context);
+						Value result = getOperand(local, code[op], func, context);
+						if (result instanceof Value.StringValue string) {
+							// The stack of this call is released so returned strings are moved to the heap
+							return memory.keepString(string, stackTop);
+						}
+						
+						return result;
 					}
 					case STACK_ALLOC -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						int size = (int) inst.getNumParam(1).getValue();
+						int size = (int) func.getConstantValue(index(code[op + 1]));
 						
-						Value.ArrayValue allocated = context.getMemory().allocate(size);
-						allocatedList.add(allocated);
-						local.put(dst, allocated);
+						local.put(index(code[op]), memory.allocateStack(size));
 					}
 					case STORE -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						InstParam idx = inst.getParam(1);
-						InstParam src = inst.getParam(2);
-						
-						int arrayIdx;
-						if (idx instanceof InstParam.Ref ref) {
-							arrayIdx = (int) local.get(ref.getReference()).getInteger();
-						} else if (idx instanceof InstParam.Num num) {
-							arrayIdx = (int) num.getValue();
-						} else {
-							throw new RuntimeException("Invalid store position '" + idx + "'");
-						}
-						
-						Value value = convertFromParam(local, src, context);
-						local.get(dst).setIndex(arrayIdx, value, src.getSize());
+						int arrayIdx = getArrayIndex(local, code[op + 1], func, "store");
+						Value value = getOperand(local, code[op + 2], func, context);
+						local.get(index(code[op])).setIndex(arrayIdx, value, func.getType(types[op + 2]));
 					}
 					case ZEXT, SEXT, TRUNC -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						ValueType type = dst.getValueType();
-						InstParam src = inst.getParam(1);
+						int dst = index(code[op]);
+						ValueType type = func.getSlotReference(dst).getValueType();
+						ValueType srcType = func.getType(types[op + 1]);
+						int src = code[op + 1];
 						
 						Value.ArrayValue arrayValue = null;
 						
 						long number;
-						if (src instanceof InstParam.Str str) {
-							// Allocate string
-							Value.ArrayValue value = context.getMemory().allocateString(str.getValue());
-							allocatedList.add(value);
-							number = value.getInteger();
-						} else if (src instanceof InstParam.Num num) {
-							number = num.getValue();
-						} else if (src instanceof InstParam.Ref ref) {
-							Value value = local.get(ref.getReference());
-							number = switch (value.getType()) {
-								case Integer, Array -> value.getInteger();
-								case Floating -> throw new RuntimeException("Cannot extend floating point");
-							};
-							
-							if (value instanceof Value.ArrayValue arr) {
-								arrayValue = arr;
+						switch (src & AmpleFunc.KIND_MASK) {
+							case AmpleFunc.STRING -> {
+								// Allocate string
+								number = memory.allocateStackString(func.getString(index(src))).getInteger();
 							}
-						} else {
-							throw new RuntimeException("Unknown parameter type '" + src.getClass() + "' (" + src + ")");
+							case AmpleFunc.CONSTANT -> number = func.getConstantValue(index(src));
+							case AmpleFunc.REF -> {
+								if (local.isInteger(index(src))) {
+									number = local.getInteger(index(src));
+									break;
+								}
+								
+								Value value = local.get(index(src));
+								number = switch (value.getType()) {
+									case Integer, Array -> value.getInteger();
+									case Floating -> throw new RuntimeException("Cannot extend floating point");
+								};
+								
+								if (value instanceof Value.ArrayValue arr) {
+									arrayValue = arr;
+								}
+							}
+							default -> throw new RuntimeException("Unknown parameter type (" + func.getInstruction(code[pc + 1]).getParam(1) + ")");
 						}
 						
-						Value result;
 						if (type.getDepth() > 0) {
+							Value result;
 							// Only allowed if the casted value was a pointer. Changing between logical size
 							if (arrayValue != null) {
 								// Make sure it's unsigned
 								result = new Value.OffsetArrayValue(arrayValue, 0);
 							} else {
-								if (src.getSize().getDepth() == 0) {
+								if (srcType.getDepth() == 0) {
 									LOGGER.info("{}", local);
-									LOGGER.info("{}", inst);
+									LOGGER.info("{}", func.getInstruction(code[pc + 1]));
 									throw new RuntimeException("Undefined behavior. Casting from a number to memory");
 								}
 								
-								result = context.getMemory().getAllocated(number);
+								result = memory.getAllocated(number);
 							}
+							
+							local.put(dst, result);
 						} else {
 							if (type.isFloating()) {
 								throw new RuntimeException("Floating type not extendable");
@@ -238,12 +235,12 @@ public class AmpleRunner {
 							
 							int typeSize = type.calculateBytes();
 							long mask = (-1L) >>> (64 - typeSize * 8);
-							int srcSize = src.getSize().calculateBytes();
+							int srcSize = srcType.calculateBytes();
 							long srcMask = (-1L) >>> (64 - srcSize * 8);
 							number &= srcMask;
 							
 							if (typeSize == 8 && arrayValue != null) {
-								result = new Value.OffsetArrayValue(arrayValue, 0);
+								local.put(dst, new Value.OffsetArrayValue(arrayValue, 0));
 							} else {
 								if (opcode == Opcode.SEXT) {
 									// Sign extend if last bit is set
@@ -253,31 +250,36 @@ public class AmpleRunner {
 									}
 								}
 								
-								number &= mask;
-								result = new Value.NumberValue(number & mask);
+								local.putInteger(dst, number & mask);
 							}
 						}
-						
-						local.put(dst, result);
 					}
 					// Equality operators
 					case LTE, LT, GTE, GT, ILTE, ILT, IGTE, IGT, NEQ, EQ -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						Value a = convertFromParam(local, inst.getParam(0), context);
-						Value b = convertFromParam(local, inst.getParam(1), context);
-						
 						boolean unsigned = switch (opcode) {
 							case LTE, LT, GTE, GT -> true;
 							default -> false;
 						};
 						
-						long compare = switch (a.getType()) {
-							case Integer -> unsigned
-								? Long.compareUnsigned(a.getInteger(), b.getInteger())
-								: Long.compare(a.getInteger(), b.getInteger());
-							case Floating -> Double.compare(a.getFloating(), b.getFloating());
-							case Array -> Long.compareUnsigned(a.getInteger(), b.getInteger());
-						};
+						long compare;
+						if (isIntegerOperand(local, code[op], func) && isIntegerOperand(local, code[op + 1], func)) {
+							long a = getIntegerOperand(local, code[op], func);
+							long b = getIntegerOperand(local, code[op + 1], func);
+							compare = unsigned ? Long.compareUnsigned(a, b) : Long.compare(a, b);
+						} else if (isFloatingOperand(local, code[op], func) && isFloatingOperand(local, code[op + 1], func)) {
+							compare = Double.compare(getFloatingOperand(local, code[op], func), getFloatingOperand(local, code[op + 1], func));
+						} else {
+							Value a = getOperand(local, code[op], func, context);
+							Value b = getOperand(local, code[op + 1], func, context);
+							
+							compare = switch (a.getType()) {
+								case Integer -> unsigned
+									? Long.compareUnsigned(a.getInteger(), b.getInteger())
+									: Long.compare(a.getInteger(), b.getInteger());
+								case Floating -> Double.compare(a.getFloating(), b.getFloating());
+								case Array -> Long.compareUnsigned(a.getInteger(), b.getInteger());
+							};
+						}
 						
 						boolean result = switch (opcode) {
 							case LTE, ILTE -> compare <= 0;
@@ -290,37 +292,58 @@ public class AmpleRunner {
 							default -> false; // Never reached
 						};
 						
-						local.put(dst, new Value.NumberValue(result ? 1 : 0));
+						local.putInteger(index(code[op]), result ? 1 : 0);
 					}
 					
 					// Branch operators
-					case JZ, JNZ, JMP -> {
-						if (opcode == Opcode.JMP) {
-							index = func.getLabel(inst.getRefParam(0).getReference());
-							continue;
+					case JMP -> {
+						int label = index(code[op]) << 1;
+						pc = labels[label];
+						max -= labels[label + 1];
+						continue;
+					}
+					case JZ, JNZ -> {
+						// 2nd param is always a label
+						boolean isZero;
+						if (isIntegerOperand(local, code[op], func)) {
+							isZero = getIntegerOperand(local, code[op], func) == 0;
+						} else if (isFloatingOperand(local, code[op], func)) {
+							isZero = getFloatingOperand(local, code[op], func) == 0;
+						} else {
+							Value a = getOperand(local, code[op], func, context);
+							isZero = switch (a.getType()) {
+								case Integer, Array -> a.getInteger() == 0;
+								case Floating -> a.getFloating() == 0;
+							};
 						}
 						
-						// 2nd param is always ref
-						Value a = convertFromParam(local, inst.getParam(0), context);
-						
-						boolean isZero = switch (a.getType()) {
-							case Integer, Array -> a.getInteger() == 0;
-							case Floating -> a.getFloating() == 0;
-						};
-						
 						if ((opcode == Opcode.JZ) == isZero) {
-							InstRef ref = inst.getRefParam(1).getReference();
-							// Jump to the reference
-							index = func.getLabel(ref);
+							// Jump to the label
+							int label = index(code[op + 1]) << 1;
+							pc = labels[label];
+							max -= labels[label + 1];
 							continue;
 						}
 					}
 					
 					// Arithmetic operators
 					case AND, XOR, SHR, SHL, OR, SUB, ADD, MUL, DIV, MOD, IMUL, IDIV, IMOD -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						Value a = convertFromParam(local, inst.getParam(0), context);
-						Value b = convertFromParam(local, inst.getParam(1), context);
+						if (isIntegerOperand(local, code[op], func) && isIntegerOperand(local, code[op + 1], func)) {
+							long a = getIntegerOperand(local, code[op], func);
+							long b = getIntegerOperand(local, code[op + 1], func);
+							local.putInteger(index(code[op]), integerArithmetic(opcode, a, b));
+							break;
+						}
+						
+						if (isFloatingOperand(local, code[op], func) && isFloatingOperand(local, code[op + 1], func)) {
+							double a = getFloatingOperand(local, code[op], func);
+							double b = getFloatingOperand(local, code[op + 1], func);
+							local.putFloating(index(code[op]), floatingArithmetic(opcode, a, b));
+							break;
+						}
+						
+						Value a = getOperand(local, code[op], func, context);
+						Value b = getOperand(local, code[op + 1], func, context);
 						
 						// Arrays are always first
 						Value.Type type = a.getType();
@@ -399,47 +422,37 @@ public class AmpleRunner {
 							case Integer, Floating -> new Value.NumberValue(type == Value.Type.Floating, result);
 						};
 						
-						local.put(dst, value);
+						local.put(index(code[op]), value);
 					}
 					case LOAD -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						InstRef arr = inst.getRefParam(1).getReference();
-						InstParam idx = inst.getParam(2);
-						
-						int arrayIdx;
-						if (idx instanceof InstParam.Ref ref) {
-							arrayIdx = (int) local.get(ref.getReference()).getInteger();
-						} else if (idx instanceof InstParam.Num num) {
-							arrayIdx = (int) num.getValue();
-						} else {
-							throw new RuntimeException("Invalid load position '" + idx + "'");
-						}
+						int dst = index(code[op]);
+						int arrayIdx = getArrayIndex(local, code[op + 2], func, "load");
 						
-						Value array = local.get(arr);
-						Value result = array.getIndex(arrayIdx, dst.getValueType(), context.getMemory()::getAllocated);
+						Value array = local.get(index(code[op + 1]));
+						Value result = array.getIndex(arrayIdx, func.getSlotReference(dst).getValueType(), memory::getAllocated);
 						local.put(dst, result);
 					}
 					case INLINE_ASM -> {
-						String type = inst.getStrParam(0).getValue();
+						String type = func.getString(index(code[op]));
 						
 						// int for interpreted mode
 						if (!type.equals("int")) {
 							break;
 						}
 						
-						String command = inst.getStrParam(1).getValue();
+						String command = func.getString(index(code[op + 1]));
 						switch (command) {
 							case "print" -> {
 								// 1st param -> pointer
 								// 2nd param -> length
-								Value a = convertFromParam(local, inst.getParam(2), context);
-								Value b = convertFromParam(local, inst.getParam(3), context);
+								Value a = getOperand(local, code[op + 2], func, context);
+								Value b = getOperand(local, code[op + 3], func, context);
 								
 								StringBuilder sb = new StringBuilder();
 								
 								long len = b.getInteger();
 								for (int i = 0; i < len; i++) {
-									Value item = a.getIndex(i, Primitives.U8, context.getMemory()::getAllocated);
+									Value item = a.getIndex(i, Primitives.U8, memory::getAllocated);
 									sb.append((char) (int) item.getInteger());
 								}
 								
@@ -449,71 +462,249 @@ public class AmpleRunner {
 						}
 					}
 					case NEG -> {
-						InstRef dst = inst.getRefParam(0).getReference();
-						Value a = convertFromParam(local, inst.getParam(1), context);
-						local.put(dst, new Value.NumberValue(-a.getInteger()));
+						long a = isIntegerOperand(local, code[op + 1], func)
+							? getIntegerOperand(local, code[op + 1], func)
+							: getOperand(local, code[op + 1], func, context).getInteger();
+						local.putInteger(index(code[op]), -a);
 					}
 					
 					default -> throw new RuntimeException("Unknown instruction '%s'".formatted(opcode));
 				}
 				
-				index++;
+				max -= code[pc + 3];
+				pc = op + paramCount;
 			}
 		} finally {
-			// Deallocate stack
-			for (Value.ArrayValue item : allocatedList) {
-				context.getMemory().deallocate(item.getInteger());
-			}
+			// Release the stack memory of this call
+			memory.releaseStack(stackTop);
 		}
 		
 		return new Value.NumberValue(0);
 	}
 	
-	private static Value convertFromParam(Locals local, InstParam param, AmpleContext context) {
-		if (param instanceof InstParam.Num num) {
-			return convertFrom(num, context);
-		} else if (param instanceof InstParam.Str str) {
-			return convertFrom(str, context);
-		} else if (param instanceof InstParam.Ref ref) {
-			return local.get(ref.getReference());
+	private static int index(int operand) {
+		return operand >>> AmpleFunc.KIND_BITS;
+	}
+	
+	/**
+	 * Returns the value of an operand
+	 */
+	private static Value getOperand(Frame local, int operand, AmpleFunc func, AmpleContext context) {
+		return switch (operand & AmpleFunc.KIND_MASK) {
+			case AmpleFunc.REF -> local.get(index(operand));
+			case AmpleFunc.CONSTANT -> func.getConstant(index(operand));
+			// Strings are released when the function returns
+			case AmpleFunc.STRING -> context.getMemory().allocateStackString(func.getString(index(operand)));
+			default -> throw new RuntimeException("Invalid operand kind " + (operand & AmpleFunc.KIND_MASK));
+		};
+	}
+	
+	/**
+	 * Returns if an operand is an integer that can be read with {@link #getIntegerOperand(Frame, int, AmpleFunc)}
+	 */
+	private static boolean isIntegerOperand(Frame local, int operand, AmpleFunc func) {
+		return switch (operand & AmpleFunc.KIND_MASK) {
+			case AmpleFunc.REF -> local.isInteger(index(operand));
+			case AmpleFunc.CONSTANT -> !func.isFloatingConstant(index(operand));
+			default -> false;
+		};
+	}
+	
+	/**
+	 * Returns the unboxed bits of an operand. Only valid if the operand is an integer or floating operand
+	 */
+	private static long getIntegerOperand(Frame local, int operand, AmpleFunc func) {
+		return (operand & AmpleFunc.KIND_MASK) == AmpleFunc.REF
+			? local.getInteger(index(operand))
+			: func.getConstantValue(index(operand));
+	}
+	
+	/**
+	 * Returns if an operand is a floating number that can be read with {@link #getFloatingOperand(Frame, int, AmpleFunc)}
+	 */
+	private static boolean isFloatingOperand(Frame local, int operand, AmpleFunc func) {
+		return switch (operand & AmpleFunc.KIND_MASK) {
+			case AmpleFunc.REF -> local.isFloating(index(operand));
+			case AmpleFunc.CONSTANT -> func.isFloatingConstant(index(operand));
+			default -> false;
+		};
+	}
+	
+	private static double getFloatingOperand(Frame local, int operand, AmpleFunc func) {
+		return Value.NumberValue.toFloating(getIntegerOperand(local, operand, func));
+	}
+	
+	/**
+	 * Copy the value of an operand into a slot without boxing numbers
+	 */
+	private static void moveOperand(Frame dst, int slot, Frame local, int operand, AmpleFunc func, AmpleContext context) {
+		if (isIntegerOperand(local, operand, func)) {
+			dst.putInteger(slot, getIntegerOperand(local, operand, func));
+		} else if (isFloatingOperand(local, operand, func)) {
+			dst.putFloating(slot, getIntegerOperand(local, operand, func));
 		} else {
-			throw new RuntimeException("Invalid param '" + param + "'");
+			dst.put(slot, getOperand(local, operand, func, context));
 		}
 	}
 	
-	private static Value convertFrom(InstParam.Num num, AmpleContext context) {
-		return new Value.NumberValue(num.getSize().isFloating(), num.getValue());
+	/**
+	 * Returns the result of an arithmetic instruction on two integers
+	 */
+	private static long integerArithmetic(Opcode opcode, long a, long b) {
+		return switch (opcode) {
+			case AND -> a & b;
+			case XOR -> a ^ b;
+			case SHR -> a >> b;
+			case SHL -> a << b;
+			case OR -> a | b;
+			case IMUL, MUL -> a * b;
+			case IDIV -> a / b;
+			case DIV -> Long.divideUnsigned(a, b);
+			// TODO: Unsigned modulo and signed modulo
+			case MOD, IMOD -> a % b;
+			case ADD -> a + b;
+			case SUB -> a - b;
+			default -> throw new RuntimeException("Arithmetic opcode '" + opcode + "' not implemented");
+		};
+	}
+	
+	/**
+	 * Returns the bits of the result of an arithmetic instruction on two floating numbers
+	 */
+	private static long floatingArithmetic(Opcode opcode, double a, double b) {
+		return switch (opcode) {
+			case AND, XOR, SHR, SHL, OR -> throw new RuntimeException("Cannot " + opcode + " " + Value.Type.Floating + " values");
+			case IMUL, MUL, IDIV, DIV -> Double.doubleToRawLongBits(a * b);
+			case MOD, IMOD -> Double.doubleToRawLongBits(a % b);
+			case ADD -> Double.doubleToRawLongBits(a + b);
+			case SUB -> Double.doubleToRawLongBits(a - b);
+			default -> throw new RuntimeException("Arithmetic opcode '" + opcode + "' not implemented");
+		};
 	}
 	
-	private static Value convertFrom(InstParam.Str str, AmpleContext context) {
-		// TODO: Deallocate strings after creation
-		return context.getMemory().allocateString(str.getValue());
+	/**
+	 * Returns the index operand of a load or store
+	 */
+	private static int getArrayIndex(Frame local, int operand, AmpleFunc func, String action) {
+		return switch (operand & AmpleFunc.KIND_MASK) {
+			case AmpleFunc.REF -> local.isInteger(index(operand))
+				? (int) local.getInteger(index(operand))
+				: (int) local.get(index(operand)).getInteger();
+			case AmpleFunc.CONSTANT -> (int) func.getConstantValue(index(operand));
+			default -> throw new RuntimeException("Invalid " + action + " position kind " + (operand & AmpleFunc.KIND_MASK));
+		};
 	}
 	
 	public int executeInstruction(int index, AmpleFunc func, AmpleContext context) {
 		return 0;
 	}
 	
-	private static class Locals {
-		private final Map<InstRef, Value> map = new LinkedHashMap<>();
+	/**
+	 * The values of the references of a function call. Each reference is stored in the slot the function assigned to it.
+	 * Integers and the bits of floating numbers are stored unboxed and are only boxed when they are read as a {@link Value}
+	 */
+	private static class Frame {
+		private static final byte EMPTY = 0;
+		private static final byte INTEGER = 1;
+		private static final byte BOXED = 2;
+		private static final byte FLOATING = 3;
+		
+		private final AmpleFunc func;
+		private final byte[] tags;
+		private final long[] integers;
+		private final Value[] values;
+		
+		Frame(AmpleFunc func) {
+			int slots = func.getSlotCount();
+			this.func = func;
+			this.tags = new byte[slots];
+			this.integers = new long[slots];
+			this.values = new Value[slots];
+		}
 		
-		public void put(InstRef ref, Value value) {
+		public void put(int slot, Value value) {
 			if (value == null) {
-				throw new RuntimeException("Invalid value cannot set '" + ref + "' to null");
+				throw new RuntimeException("Invalid value cannot set '" + func.getSlotReference(slot) + "' to null");
 			}
-			map.put(ref, value);
+			
+			if (value instanceof Value.NumberValue number) {
+				if (number.getType() == Value.Type.Floating) {
+					putFloating(slot, number.getBits());
+				} else {
+					putInteger(slot, number.getBits());
+				}
+			} else {
+				tags[slot] = BOXED;
+				values[slot] = value;
+			}
+		}
+		
+		public void putInteger(int slot, long value) {
+			tags[slot] = INTEGER;
+			integers[slot] = value;
+			values[slot] = null;
+		}
+		
+		/**
+		 * Store the bits of a floating number
+		 */
+		public void putFloating(int slot, long bits) {
+			tags[slot] = FLOATING;
+			integers[slot] = bits;
+			values[slot] = null;
+		}
+		
+		public Value get(int slot) {
+			return switch (tags[slot]) {
+				case INTEGER -> new Value.NumberValue(integers[slot]);
+				case FLOATING -> new Value.NumberValue(true, integers[slot]);
+				case BOXED -> values[slot];
+				default -> throw new RuntimeException("Invalid value cannot get '" + func.getSlotReference(slot) + "' because it does not exist");
+			};
 		}
 		
-		public Value get(InstRef ref) {
-			if (!map.containsKey(ref)) {
-				throw new RuntimeException("Invalid value cannot get '" + ref + "' because it does not exist");
+		/**
+		 * Returns if the slot contains an unboxed integer
+		 */
+		public boolean isInteger(int slot) {
+			return tags[slot] == INTEGER;
+		}
+		
+		/**
+		 * Returns if the slot contains the unboxed bits of a floating number
+		 */
+		public boolean isFloating(int slot) {
+			return tags[slot] == FLOATING;
+		}
+		
+		/**
+		 * Returns the integer or the floating bits of a slot. Only valid if {@link #isInteger(int)} or {@link #isFloating(int)} is {@code true}
+		 */
+		public long getInteger(int slot) {
+			return integers[slot];
+		}
+		
+		/**
+		 * Copy the values of the references used by this frame from a map
+		 */
+		public void load(Map<InstRef, Value> map) {
+			for (int i = 0; i < tags.length; i++) {
+				Value value = map.get(func.getSlotReference(i));
+				if (value != null) {
+					put(i, value);
+				}
 			}
-			
-			return map.get(ref);
 		}
 		
-		public void add(Locals locals) {
-			this.map.putAll(locals.map);
+		/**
+		 * Copy the values that have been set in this frame to a map
+		 */
+		public void store(Map<InstRef, Value> map) {
+			for (int i = 0; i < tags.length; i++) {
+				if (tags[i] != EMPTY) {
+					map.put(func.getSlotReference(i), get(i));
+				}
+			}
 		}
 		
 		@Override
@@ -521,13 +712,18 @@ public class AmpleRunner {
 			StringBuilder sb = new StringBuilder();
 			sb.append("{");
 			
-			var iter = map.entrySet().iterator();
-			while (iter.hasNext()) {
-				var entry = iter.next();
-				sb.append(entry.getKey().toSimpleString()).append('=').append(entry.getValue());
-				if (iter.hasNext()) {
+			boolean first = true;
+			for (int i = 0; i < tags.length; i++) {
+				if (tags[i] == EMPTY) {
+					continue;
+				}
+				
+				if (!first) {
 					sb.append(", ");
 				}
+				
+				sb.append(func.getSlotReference(i).toSimpleString()).append('=').append(get(i));
+				first = false;
 			}
 			
 			return sb.append('}').toString();
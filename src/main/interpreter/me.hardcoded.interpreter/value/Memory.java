@@ -1,61 +1,145 @@
 package me.hardcoded.interpreter.value;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
 public class Memory {
+	/**
+	 * Set in the address of memory allocated on the stack. The stack offset is never negative so the other
+	 * high bits contain the offset in the stack without overlapping this bit
+	 */
+	private static final long STACK_ADDRESS = 1L << 63;
+	
 	private final Map<Long, Value.ArrayValue> allocatedMemory;
-	private final LinkedList<Long> availableMemory;
+	private final MemoryArena arena;
 	private long nextAllocated;
 	
+	// The interpreter runs on a single thread so each memory only needs one stack
+	private final MemoryArena stack;
+	private int[] stackBases;
+	private int[] stackSizes;
+	private int stackCount;
+	
 	public Memory() {
 		this.allocatedMemory = new HashMap<>();
-		this.availableMemory = new LinkedList<>();
+		this.arena = new MemoryArena();
+		this.stack = new MemoryArena();
+		this.stackBases = new int[64];
+		this.stackSizes = new int[64];
 		
 		// Allocate nullptr
 		allocate(0);
 	}
 	
 	public Value.ArrayValue allocate(int size) {
-		long idx;
-		if (availableMemory.isEmpty()) {
-			idx = nextAllocated++;
-		} else {
-			idx = availableMemory.removeFirst();
-		}
-		Value.ArrayValue value = new Value.ArrayValue(idx << 32, size);
+		long idx = nextAllocationId();
+		Value.ArrayValue value = new Value.ArrayValue(arena, idx << 32, arena.allocate(size), size);
 		allocatedMemory.put(idx, value);
 		return value;
 	}
 	
 	public Value.ArrayValue allocateString(String string) {
-		long idx;
-		if (availableMemory.isEmpty()) {
-			idx = nextAllocated++;
-		} else {
-			idx = availableMemory.removeFirst();
-		}
-		Value.StringValue value = new Value.StringValue(idx << 32, string);
+		long idx = nextAllocationId();
+		Value.StringValue value = new Value.StringValue(arena, idx << 32, arena.allocate(string.length() + 1), string);
 		allocatedMemory.put(idx, value);
 		return value;
 	}
 	
-	public void deallocate(long address) {
-		if ((address >> 32) == 0) {
-			// nullptr
-			return;
+	private long nextAllocationId() {
+		// Larger ids would set the bit of stack addresses
+		if (nextAllocated > Integer.MAX_VALUE) {
+			throw new RuntimeException("Out of memory. Too many heap allocations");
+		}
+		
+		return nextAllocated++;
+	}
+	
+	/**
+	 * Returns the top of the stack. Memory allocated on the stack is released by calling {@link #releaseStack(int)} with this value
+	 */
+	public int getStackTop() {
+		return stack.getTop();
+	}
+	
+	/**
+	 * Allocate memory on the stack
+	 */
+	public Value.ArrayValue allocateStack(int size) {
+		int base = pushStack(size);
+		return new Value.ArrayValue(stack, STACK_ADDRESS | ((long) base << 32), base, size);
+	}
+	
+	/**
+	 * Allocate a string on the stack
+	 */
+	public Value.ArrayValue allocateStackString(String string) {
+		int base = pushStack(string.length() + 1);
+		return new Value.StringValue(stack, STACK_ADDRESS | ((long) base << 32), base, string);
+	}
+	
+	/**
+	 * Returns a copy on the heap of a string that was allocated on the stack after {@link #getStackTop()} returned {@code top}
+	 */
+	public Value.ArrayValue keepString(Value.StringValue string, int top) {
+		if (string.arena != stack || string.base < top) {
+			return string;
+		}
+		
+		Value.ArrayValue value = allocate(string.size);
+		for (int i = 0; i < string.size; i++) {
+			arena.write(value.base + i, stack.read(string.base + i, 1), 1);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Release all memory allocated on the stack after {@link #getStackTop()} returned {@code top}
+	 */
+	public void releaseStack(int top) {
+		while (stackCount > 0 && stackBases[stackCount - 1] >= top) {
+			stackCount--;
 		}
 		
-		allocatedMemory.remove(address);
-		availableMemory.push(address >> 32);
+		stack.release(top);
+	}
+	
+	private int pushStack(int size) {
+		if (stackCount == stackBases.length) {
+			stackBases = Arrays.copyOf(stackBases, stackCount * 2);
+			stackSizes = Arrays.copyOf(stackSizes, stackCount * 2);
+		}
+		
+		// Every allocation uses at least one byte so each allocation has a unique address
+		int base = stack.allocate(Math.max(size, 1));
+		stackBases[stackCount] = base;
+		stackSizes[stackCount] = size;
+		stackCount++;
+		return base;
 	}
 	
 	public Value.ArrayValue getAllocated(long address) {
-		Value.ArrayValue arrayValue = allocatedMemory.get(address >> 32);
+		Value.ArrayValue arrayValue;
+		if ((address & STACK_ADDRESS) != 0) {
+			arrayValue = getStackAllocated(address);
+		} else {
+			arrayValue = allocatedMemory.get(address >> 32);
+		}
+		
 		if (arrayValue != null && (int) address != 0) {
 			return new Value.OffsetArrayValue(arrayValue, (int) address);
 		}
 		return arrayValue;
 	}
+	
+	private Value.ArrayValue getStackAllocated(long address) {
+		int base = (int) ((address & ~STACK_ADDRESS) >>> 32);
+		int index = Arrays.binarySearch(stackBases, 0, stackCount, base);
+		if (index < 0) {
+			return null;
+		}
+		
+		return new Value.ArrayValue(stack, address & ~0xffffffffL, base, stackSizes[index]);
+	}
 }
@@ -0,0 +1,126 @@
+package me.hardcoded.interpreter.value;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/**
+ * A contiguous block of off-heap memory that contains the bytes of all arrays.
+ *
+ * <p>Values are stored in little endian and are read and written with a single load or store.
+ * Two bitmaps keep track of which bytes have been written and which bytes start a pointer.
+ * Memory is allocated with a bump pointer and is only released from the top.
+ *
+ * @author HardCoded
+ */
+class MemoryArena {
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+	
+	private final BitSet initialized;
+	private final BitSet pointers;
+	private ByteBuffer buffer;
+	private int top;
+	
+	MemoryArena() {
+		this.initialized = new BitSet();
+		this.pointers = new BitSet();
+		this.buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Returns the offset of a new uninitialized block of memory
+	 */
+	int allocate(int size) {
+		if (size < 0) {
+			throw new RuntimeException("Undefined behavior. Trying to allocate a negative amount of memory");
+		}
+		
+		ensureCapacity(size);
+		int offset = top;
+		top += size;
+		
+		initialized.clear(offset, offset + size);
+		pointers.clear(offset, offset + size);
+		return offset;
+	}
+	
+	/**
+	 * Returns the end of the used memory. Used with {@link #release(int)} to release blocks in the reverse order they were allocated
+	 */
+	int getTop() {
+		return top;
+	}
+	
+	/**
+	 * Release every block allocated after {@link #getTop()} returned {@code top}
+	 */
+	void release(int top) {
+		this.top = top;
+	}
+	
+	/**
+	 * Read an unsigned value of {@code size} bytes
+	 */
+	long read(int offset, int size) {
+		if (initialized.nextClearBit(offset) < offset + size) {
+			throw new RuntimeException("Undefined behavior. Trying to read uninitialized array value");
+		}
+		
+		return switch (size) {
+			case 8 -> buffer.getLong(offset);
+			case 4 -> buffer.getInt(offset) & 0xffffffffL;
+			case 2 -> buffer.getShort(offset) & 0xffffL;
+			case 1 -> buffer.get(offset) & 0xffL;
+			default -> throw new RuntimeException("Undefined behavior. Trying to read undefined sized value");
+		};
+	}
+	
+	/**
+	 * Write the lowest {@code size} bytes of a value
+	 */
+	void write(int offset, long value, int size) {
+		switch (size) {
+			case 8 -> buffer.putLong(offset, value);
+			case 4 -> buffer.putInt(offset, (int) value);
+			case 2 -> buffer.putShort(offset, (short) value);
+			case 1 -> buffer.put(offset, (byte) value);
+			default -> throw new RuntimeException("Undefined behavior. Trying to write undefined sized value");
+		}
+		
+		initialized.set(offset, offset + size);
+	}
+	
+	boolean isPointer(int offset) {
+		return pointers.get(offset);
+	}
+	
+	/**
+	 * Set if the value at the offset is a pointer. The other bytes of the value are never pointers
+	 */
+	void setPointer(int offset, int size, boolean pointer) {
+		pointers.clear(offset, offset + size);
+		if (pointer) {
+			pointers.set(offset);
+		}
+	}
+	
+	private void ensureCapacity(int size) {
+		long required = (long) top + size;
+		if (required <= buffer.capacity()) {
+			return;
+		}
+		
+		if (required > Integer.MAX_VALUE) {
+			throw new RuntimeException("Out of memory");
+		}
+		
+		long capacity = buffer.capacity();
+		while (capacity < required) {
+			capacity *= 2;
+		}
+		
+		ByteBuffer next = ByteBuffer.allocateDirect((int) Math.min(capacity, Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+		next.put(0, buffer, 0, top);
+		buffer = next;
+	}
+}
@@ -72,7 +72,21 @@ public interface Value {
 				throw new UnsupportedOperationException();
 			}
 			
-			return Double.doubleToRawLongBits(value);
+			return toFloating(value);
+		}
+		
+		/**
+		 * Returns the raw bits of the number
+		 */
+		public long getBits() {
+			return value;
+		}
+		
+		/**
+		 * Returns the value {@link #getFloating()} returns for a floating number with the specified bits
+		 */
+		public static double toFloating(long bits) {
+			return Double.longBitsToDouble(bits);
 		}
 		
 		@Override
@@ -84,20 +98,16 @@ public interface Value {
 	}
 	
 	class ArrayValue implements Value {
-		protected final Integer[] values;
+		protected final MemoryArena arena;
 		protected final long address;
-		private final boolean[] pointer;
+		protected final int base;
+		protected final int size;
 		
-		public ArrayValue(long address, int size) {
+		ArrayValue(MemoryArena arena, long address, int base, int size) {
+			this.arena = arena;
 			this.address = address;
-			this.values = new Integer[size];
-			this.pointer = new boolean[size];
-		}
-		
-		protected ArrayValue(long address, Integer[] values, boolean[] pointer) {
-			this.address = address;
-			this.values = values;
-			this.pointer = pointer;
+			this.base = base;
+			this.size = size;
 		}
 		
 		@Override
@@ -109,25 +119,6 @@ public interface Value {
 			return (type.getDepth() > 0) ? ValueType.getPointerSize() : (type.getSize() >> 3);
 		}
 		
-		private long read(int index, int size) {
-			long result = 0;
-			for (int i = 0; i < size; i++) {
-				Integer read = values[index + i];
-				if (read == null) {
-					throw new RuntimeException("Undefined behavior. Trying to read uninitialized array value");
-				}
-				result |= (read & 0xffL) << (i * 8);
-			}
-			
-			return result;
-		}
-		
-		private void write(int index, long value, int size) {
-			for (int i = 0; i < size; i++) {
-				values[index + i] = (int) (value >> (i * 8)) & 0xff;
-			}
-		}
-		
 		protected int transformIndex(int index) {
 			return index;
 		}
@@ -137,16 +128,12 @@ public interface Value {
 			index = transformIndex(index);
 			
 			int typeSize = getTypeSize(type);
-			if (index < 0 || index + typeSize > values.length) {
+			if (index < 0 || index + typeSize > size) {
 				throw new RuntimeException("Undefined behavior. Trying to read outside of memory");
 			}
 			
-			long read = switch (typeSize) {
-				case 8, 4, 2, 1 -> read(index, typeSize);
-				default -> throw new RuntimeException("Undefined behavior. Trying to read undefined sized value");
-			};
-			
-			boolean isPointer = typeSize == 8 && pointer[index];
+			long read = arena.read(base + index, typeSize);
+			boolean isPointer = typeSize == 8 && arena.isPointer(base + index);
 			
 			if (type.getDepth() > 0) {
 				Value value = addressResolver.apply(read);
@@ -178,26 +165,24 @@ public interface Value {
 			index = transformIndex(index);
 			
 			int typeSize = getTypeSize(type);
-			if (index < 0 || index >= values.length) {
-				throw new RuntimeException("Undefined behavior. Trying to write outside of memory (size=" + values.length + ") (index=" + index + ")");
-			}
-			
-			// Clear pointer
-			for (int i = 0; i < typeSize; i++) {
-				pointer[index + i] = false;
+			if (index < 0 || index + typeSize > size) {
+				throw new RuntimeException("Undefined behavior. Trying to write outside of memory (size=" + size + ") (index=" + index + ")");
 			}
 			
 			long result;
+			boolean isPointer;
 			if (value instanceof NumberValue val) {
 				result = val.value;
+				isPointer = false;
 			} else if (value instanceof ArrayValue val) {
 				result = val.address;
-				pointer[index] = true;
+				isPointer = true;
 			} else {
 				throw new RuntimeException("Unknown value type '" + (value == null ? null : value.getClass()) + "'");
 			}
 			
-			write(index, result, typeSize);
+			arena.write(base + index, result, typeSize);
+			arena.setPointer(base + index, typeSize, isPointer);
 		}
 		
 		@Override
@@ -212,7 +197,7 @@ public interface Value {
 		
 		@Override
 		public String toString() {
-			return "Array<" + values.length + "> " + String.format("0x%016x", address);
+			return "Array<" + size + "> " + String.format("0x%016x", address);
 		}
 	}
 	
@@ -221,7 +206,7 @@ public interface Value {
 		private final int offset;
 		
 		public OffsetArrayValue(ArrayValue value, int offset) {
-			super(value.getInteger(), value.values, value.pointer);
+			super(value.arena, value.getInteger(), value.base, value.size);
 			
 			if (value instanceof OffsetArrayValue oav) {
 				this.offset = oav.offset + offset;
@@ -244,27 +229,27 @@ public interface Value {
 		
 		@Override
 		public String toString() {
-			return "Array<" + values.length + "> " + String.format("0x%016x", getInteger());
+			return "Array<" + size + "> " + String.format("0x%016x", getInteger());
 		}
 	}
 	
 	class StringValue extends ArrayValue {
-		public StringValue(long address, String string) {
-			super(address, string.length() + 1);
+		StringValue(MemoryArena arena, long address, int base, String string) {
+			super(arena, address, base, string.length() + 1);
 			
 			for (int i = 0; i < string.length(); i++) {
-				this.values[i] = ((int) string.charAt(i)) & 0xff;
+				arena.write(base + i, string.charAt(i), 1);
 			}
 			
 			// Null termination
-			this.values[string.length()] = 0;
+			arena.write(base + string.length(), 0, 1);
 		}
 		
 		@Override
 		public String toString() {
 			StringBuilder value = new StringBuilder();
-			for (Integer item : values) {
-				value.append((char) (int) item);
+			for (int i = 0; i < size; i++) {
+				value.append((char) arena.read(base + i, 1));
 			}
 			return '"' + StringUtils.escapeString(value.toString()) + "\" " + String.format("0x%016x", address);
 		}
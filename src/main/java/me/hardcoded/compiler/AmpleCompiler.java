@@ -4,27 +4,52 @@ import me.hardcoded.compiler.context.AmpleConfig;
 import me.hardcoded.compiler.errors.CompilerException;
 import me.hardcoded.compiler.impl.ICodeGenerator;
 import me.hardcoded.compiler.intermediate.AmpleLinker;
+import me.hardcoded.compiler.intermediate.IntermediateCache;
 import me.hardcoded.compiler.intermediate.inst.IntermediateFile;
 import me.hardcoded.compiler.parser.AmpleParser;
+import me.hardcoded.compiler.parser.ImportScanner;
 import me.hardcoded.compiler.parser.LinkableObject;
 import me.hardcoded.compiler.parser.serial.LinkableDeserializer;
 import me.hardcoded.compiler.parser.serial.LinkableSerializer;
 import me.hardcoded.configuration.CompilerConfiguration;
 import me.hardcoded.configuration.OutputFormat;
 import me.hardcoded.interpreter.AmpleRunner;
+import me.hardcoded.main.Main;
 import me.hardcoded.utils.AmpleCache;
+import me.hardcoded.utils.CacheArchive;
+import me.hardcoded.utils.CacheManifest;
 import me.hardcoded.utils.ObjectUtils;
+import me.hardcoded.utils.SharedCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AmpleCompiler {
 	private static final Logger LOGGER = LogManager.getLogger(AmpleCompiler.class);
@@ -35,26 +60,61 @@ public class AmpleCompiler {
 		this.ampleConfig = ampleConfig;
 	}
 	
-	private LinkableObject parseLinkableObject(File file) {
-		Exception cacheFailure = null;
+	/**
+	 * Returns the cached object of a file or {@code null} if the cache is disabled or outdated
+	 *
+	 * @param file  the source file
+	 * @param cache the cache of the compilation
+	 * @throws Exception if the cache file could not be read
+	 */
+	private LinkableObject readCachedObject(File file, CacheContext cache) throws Exception {
+		if (!ampleConfig.getConfiguration().useCache()) {
+			return null;
+		}
 		
-		try {
-			if (ampleConfig.getConfiguration().useCache()) {
-				try {
-					File cacheFile = new File(ampleConfig.getConfiguration().getOutputFolder(), AmpleCache.getCacheFileName(ampleConfig, file));
-					if (cacheFile.exists()) {
-						LinkableObject obj = LinkableDeserializer.deserializeLinkable(Files.readAllBytes(cacheFile.toPath()));
-						if (obj != null && obj.getChecksum().equals(AmpleCache.getFileChecksum(file))) {
-							LOGGER.info(" - [CACHE] {}", file);
-							return obj;
-						}
-					}
-				} catch (Exception e) {
-					// If the next step does not fail we continue
-					cacheFailure = e;
-				}
+		String checksum = cache.manifest().getFileChecksum(file);
+		String cacheName = AmpleCache.getCacheFileName(ampleConfig, file);
+		LinkableObject obj = null;
+		if (cache.archive() != null) {
+			ByteBuffer buffer = cache.archive().get(cacheName);
+			
+			// Only the header is read to check if the cache is outdated
+			if (buffer != null && checksum.equals(LinkableDeserializer.readChecksum(buffer))) {
+				obj = LinkableDeserializer.deserializeLinkable(buffer);
+			}
+		} else {
+			File cacheFile = new File(ampleConfig.getConfiguration().getOutputFolder(), cacheName);
+			
+			// Only the header is read to check if the cache is outdated
+			if (cacheFile.exists() && checksum.equals(LinkableDeserializer.readChecksum(cacheFile))) {
+				obj = LinkableDeserializer.deserializeLinkable(Files.readAllBytes(cacheFile.toPath()));
 			}
+		}
+		
+		if (obj != null && obj.getChecksum().equals(checksum)) {
+			LOGGER.info(" - [CACHE] {}", file);
+			return obj;
+		}
+		
+		if (cache.shared() != null) {
+			ByteBuffer buffer = cache.shared().get(file, checksum);
 			
+			// The entry could have been created from a file with the same content in another project
+			if (buffer != null && checksum.equals(LinkableDeserializer.readChecksum(buffer))) {
+				obj = LinkableDeserializer.deserializeLinkable(buffer, file);
+				
+				if (obj != null && obj.getChecksum().equals(checksum)) {
+					LOGGER.info(" - [SHARED CACHE] {}", file);
+					return obj;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private LinkableObject parseLinkableObject(File file, Exception cacheFailure) {
+		try {
 			LinkableObject obj = new AmpleParser(ampleConfig).fromFile(file);
 			if (cacheFailure != null) {
 				LOGGER.warn(" - [SUCCESS - CACHE FAILED] {}", file, cacheFailure);
@@ -75,77 +135,448 @@ public class AmpleCompiler {
 		throw new RuntimeException("Failed to load file");
 	}
 	
-	public void compile() throws IOException, CompilerException {
-		CompilerConfiguration config = ampleConfig.getConfiguration();
-		File inputFile = config.getSourceFile();
-		File outputFolder = config.getOutputFolder();
-		File workingDir = config.getWorkingDirectory();
+	/**
+	 * Parse the input file and all files it imports.
+	 *
+	 * <p>Each file is handled by a task on a {@link ForkJoinPool}. Before a file is parsed its imports
+	 * are found with the {@link ImportScanner} and parsed in parallel, this means that the whole import
+	 * graph is discovered without waiting for any file to be parsed. The returned list is ordered by a
+	 * breadth first walk of the imports so the result does not depend on the order the files were parsed.
+	 *
+	 * @param workingDir the working directory that imports are resolved from
+	 * @param inputFile  the input file
+	 */
+	private List<ParsedFile> parseImports(File workingDir, File inputFile, CacheContext cache) throws IOException {
+		ParseContext context = new ParseContext(workingDir, new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet(), new AtomicBoolean(), cache);
+		Map<String, ParsedFile> parsedFiles = context.parsedFiles();
 		
-		LinkedList<LinkableObject> list = new LinkedList<>();
+		File root = new File(workingDir, workingDir.toPath().relativize(inputFile.toPath()).toString()).getCanonicalFile();
+		context.discoveredPaths().add(root.getAbsolutePath());
 		
-		LOGGER.info("");
-		LOGGER.info("Import Files:");
-		{
-			LinkedList<String> importableFiles = new LinkedList<>();
-			importableFiles.add(workingDir.toPath().relativize(inputFile.toPath()).toString());
+		try {
+			ForkJoinPool.commonPool().invoke(new ParseTask(context, root));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		
+		List<ParsedFile> list = new ArrayList<>(parsedFiles.size());
+		Set<String> visited = new HashSet<>();
+		LinkedList<String> queue = new LinkedList<>();
+		queue.add(root.getAbsolutePath());
+		visited.add(root.getAbsolutePath());
+		
+		while (!queue.isEmpty()) {
+			ParsedFile parsed = parsedFiles.get(queue.poll());
+			list.add(parsed);
 			
-			Set<String> importedPaths = new HashSet<>();
+			for (String path : parsed.imports()) {
+				if (visited.add(path)) {
+					queue.add(path);
+				}
+			}
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * A parsed file and the canonical paths of the files it imports
+	 *
+	 * @param cacheWrite  the pending write of the cache file or {@code null} if the object was read from the cache
+	 * @param sharedWrite the pending write of the shared cache entry or {@code null} if there is none
+	 */
+	private record ParsedFile(LinkableObject obj, List<String> imports, Future<Integer> cacheWrite, Future<?> sharedWrite) {
+	}
+	
+	/**
+	 * The cache files of a compilation
+	 *
+	 * @param writer   the executor that writes cache files
+	 * @param manifest the manifest of the source files
+	 * @param archive  the cache archive or {@code null} if each object has its own cache file
+	 * @param shared   the cache shared between projects or {@code null} if there is no shared cache
+	 */
+	private record CacheContext(ExecutorService writer, CacheManifest manifest, CacheArchive archive, SharedCache shared) {
+	}
+	
+	/**
+	 * Returns the shared cache of the configuration or {@code null} if it is not used
+	 */
+	private SharedCache openSharedCache(CompilerConfiguration config) {
+		if (config.getSharedCacheFolder() == null || !config.useCache()) {
+			return null;
+		}
+		
+		String version = Main.getVersion() + "-" + LinkableSerializer.getFormatVersion();
+		try {
+			return SharedCache.open(config.getSharedCacheFolder(), config.getChecksumType(), version, config.getSharedCacheSize());
+		} catch (IOException e) {
+			LOGGER.error("Failed to open shared cache '{}'", config.getSharedCacheFolder(), e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Write the serialized object to its cache file on the cache writer
+	 *
+	 * @return a future of the amount of bytes written
+	 */
+	private Future<Integer> writeCacheFile(LinkableObject obj, byte[] bytes, CacheContext cache) {
+		String cacheName = AmpleCache.getCacheFileName(ampleConfig, obj.getFile());
+		if (cache.archive() != null) {
+			// The archive is written when the compilation has finished
+			cache.archive().put(cacheName, bytes);
+			return CompletableFuture.completedFuture(bytes.length);
+		}
+		
+		File outputFile = new File(ampleConfig.getConfiguration().getOutputFolder(), cacheName);
+		return cache.writer().submit(() -> {
+			writeFileAtomically(outputFile, bytes);
+			return bytes.length;
+		});
+	}
+	
+	/**
+	 * Write a file through a temporary file so a cache file that was not fully written is never read
+	 */
+	private static void writeFileAtomically(File file, byte[] bytes) throws IOException {
+		Path tempFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+		try {
+			Files.write(tempFile, bytes);
 			
-			while (!importableFiles.isEmpty()) {
-				File file = new File(workingDir, importableFiles.poll()).getCanonicalFile();
+			try {
+				Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	/**
+	 * Write the serialized object to the shared cache on the cache writer
+	 *
+	 * @return a future of the write or {@code null} if there is no shared cache
+	 */
+	private Future<?> writeSharedCacheFile(LinkableObject obj, byte[] bytes, CacheContext cache) {
+		if (cache.shared() == null) {
+			return null;
+		}
+		
+		return cache.writer().submit(() -> {
+			cache.shared().put(obj.getFile(), obj.getChecksum(), bytes);
+			return null;
+		});
+	}
+	
+	/**
+	 * Returns the cache of the intermediate code, it is stored next to the cached objects
+	 */
+	private IntermediateCache createIntermediateCache(CacheContext cache) {
+		File outputFolder = ampleConfig.getConfiguration().getOutputFolder();
+		
+		return new IntermediateCache() {
+			@Override
+			public ByteBuffer read(File file) throws IOException {
+				if (!ampleConfig.getConfiguration().useCache()) {
+					return null;
+				}
 				
-				if (importedPaths.add(file.getAbsolutePath())) {
-					LinkableObject obj = parseLinkableObject(file);
-					list.add(obj);
-					importableFiles.addAll(obj.getImports());
+				String cacheName = AmpleCache.getIntermediateCacheFileName(ampleConfig, file);
+				if (cache.archive() != null) {
+					return cache.archive().get(cacheName);
 				}
+				
+				File cacheFile = new File(outputFolder, cacheName);
+				return cacheFile.exists() ? ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath())) : null;
+			}
+			
+			@Override
+			public void write(File file, byte[] bytes) {
+				String cacheName = AmpleCache.getIntermediateCacheFileName(ampleConfig, file);
+				if (cache.archive() != null) {
+					cache.archive().put(cacheName, bytes);
+					return;
+				}
+				
+				cache.writer().submit(() -> {
+					writeFileAtomically(new File(outputFolder, cacheName), bytes);
+					return null;
+				});
+			}
+		};
+	}
+	
+	/**
+	 * Wait for all cache files to be written
+	 */
+	private void finishCacheWrites(List<ParsedFile> list) {
+		LOGGER.info("");
+		LOGGER.info("Cache Files:");
+		
+		for (ParsedFile parsed : list) {
+			if (parsed.cacheWrite() == null) {
+				continue;
+			}
+			
+			String cacheName = AmpleCache.getCacheFileName(ampleConfig, parsed.obj().getFile());
+			try {
+				int length = parsed.cacheWrite().get();
+				LOGGER.info(" - [{}] {}", length == 1 ? "1 byte" : (length + " bytes"), new File(ampleConfig.getConfiguration().getOutputFolder(), cacheName));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				LOGGER.error("", e);
+			} catch (ExecutionException e) {
+				LOGGER.error("", e.getCause());
+			}
+			
+			if (parsed.sharedWrite() == null) {
+				continue;
+			}
+			
+			try {
+				parsed.sharedWrite().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				LOGGER.error("", e);
+			} catch (ExecutionException e) {
+				LOGGER.error("Failed to write shared cache entry of '{}'", parsed.obj().getFile(), e.getCause());
 			}
 		}
+	}
+	
+	/**
+	 * Check that each object is unchanged after it has been serialized and deserialized
+	 */
+	private void verifyCache(List<ParsedFile> list) {
+		LOGGER.info("");
+		LOGGER.info("Verify Cache:");
 		
-		// To make sure that each run tests the cache system we should always run this
-		// if (ampleConfig.getConfiguration().useCache())
-		{
-			LOGGER.info("");
-			LOGGER.info("Cache Files:");
+		for (ParsedFile parsed : list) {
+			LinkableObject obj = parsed.obj();
+			byte[] bytes = LinkableSerializer.serializeLinkable(obj);
+			LinkableObject loaded = LinkableDeserializer.deserializeLinkable(bytes);
+			byte[] recombined = LinkableSerializer.serializeLinkable(loaded);
 			
-			for (LinkableObject obj : list) {
+			if (Arrays.compare(bytes, recombined) != 0) {
+				LOGGER.error("Serialized data did not match");
+				LOGGER.error("({}) became ({}) bytes", bytes.length, recombined.length);
+				
 				try {
-					byte[] bytes = LinkableSerializer.serializeLinkable(obj);
+					String a = ObjectUtils.deepPrint(obj, 5);
+					String b = ObjectUtils.deepPrint(loaded, 5);
 					
-					File outputFile = new File(outputFolder, AmpleCache.getCacheFileName(ampleConfig, obj.getFile()));
-					Files.write(outputFile.toPath(), bytes);
-					
-					LOGGER.info(" - [{}] {}", bytes.length == 1 ? "1 byte" : (bytes.length + " bytes"), outputFile);
-					
-					// Only run this code if serialization validation is enabled
-					LinkableObject loaded = LinkableDeserializer.deserializeLinkable(bytes);
-					byte[] recombined = LinkableSerializer.serializeLinkable(loaded);
-					
-					if (Arrays.compare(bytes, recombined) != 0) {
-						LOGGER.error("Serialized data did not match");
-						LOGGER.error("({}) became ({}) bytes", bytes.length, recombined.length);
-						
-						try {
-							String a = ObjectUtils.deepPrint(obj, 5);
-							String b = ObjectUtils.deepPrint(loaded, 5);
-							
-							LOGGER.info("{}", a);
-							LOGGER.info("{}", b);
-						} catch (Exception e) {
-							LOGGER.error("", e);
-						}
-						
-						throw new RuntimeException("Linkable serializer did not match");
+					LOGGER.info("{}", a);
+					LOGGER.info("{}", b);
+				} catch (Exception e) {
+					LOGGER.error("", e);
+				}
+				
+				throw new RuntimeException("Linkable serializer did not match");
+			}
+			
+			LOGGER.info(" - [OK] {}", obj.getFile());
+		}
+	}
+	
+	/**
+	 * The state shared by all parse tasks of a compilation. Tasks that start after a file has failed do nothing
+	 */
+	private record ParseContext(File workingDir, Map<String, ParsedFile> parsedFiles, Set<String> discoveredPaths, AtomicBoolean failed, CacheContext cache) {
+	}
+	
+	private class ParseTask extends RecursiveAction {
+		@Serial
+		private static final long serialVersionUID = 1L;
+		
+		private final ParseContext context;
+		private final File file;
+		private final List<ParseTask> tasks;
+		
+		ParseTask(ParseContext context, File file) {
+			this.context = context;
+			this.file = file;
+			this.tasks = new ArrayList<>();
+		}
+		
+		@Override
+		protected void compute() {
+			if (context.failed().get()) {
+				return;
+			}
+			
+			try {
+				parseFile();
+			} catch (RuntimeException e) {
+				context.failed().set(true);
+				throw e;
+			} finally {
+				// The imports are always waited for so no file is parsed after the compilation has failed
+				for (int i = tasks.size() - 1; i >= 0; i--) {
+					tasks.get(i).quietlyJoin();
+				}
+			}
+			
+			for (ParseTask task : tasks) {
+				// Rethrow the exception of an import that failed
+				task.join();
+			}
+		}
+		
+		private void parseFile() {
+			LinkableObject obj = null;
+			Future<Integer> cacheWrite = null;
+			Future<?> sharedWrite = null;
+			Exception cacheFailure = null;
+			try {
+				obj = readCachedObject(file, context.cache());
+			} catch (Exception e) {
+				// If the next step does not fail we continue
+				cacheFailure = e;
+			}
+			
+			if (obj == null) {
+				// Start parsing the imports before parsing this file
+				try {
+					for (String importPath : ImportScanner.scan(file)) {
+						resolveImport(importPath);
 					}
+				} catch (Exception e) {
+					// The parser will report the error
+				}
+				
+				// The attributes are read before the file so a change while parsing is not recorded as unchanged
+				BasicFileAttributes attributes = null;
+				try {
+					attributes = context.cache().manifest().readAttributes(file);
 				} catch (IOException e) {
-					LOGGER.error("", e);
+					// The parser will report the error
+				}
+				
+				obj = parseLinkableObject(file, cacheFailure);
+				if (attributes != null) {
+					context.cache().manifest().put(file, attributes, obj.getChecksum());
 				}
+				
+				// Only files that were parsed need to update their cache
+				byte[] bytes = LinkableSerializer.serializeLinkable(obj);
+				cacheWrite = writeCacheFile(obj, bytes, context.cache());
+				sharedWrite = writeSharedCacheFile(obj, bytes, context.cache());
+			}
+			
+			// The imports of the parsed file are always checked in case the scanner missed any
+			List<String> imports = new ArrayList<>(obj.getImports().size());
+			for (String importPath : obj.getImports()) {
+				imports.add(resolveImport(importPath));
 			}
+			
+			context.parsedFiles().put(file.getAbsolutePath(), new ParsedFile(obj, imports, cacheWrite, sharedWrite));
 		}
 		
-		// Combine all linkable objects into one instruction file
-		AmpleLinker linker = new AmpleLinker(ampleConfig);
-		IntermediateFile file = linker.link(list);
+		/**
+		 * Returns the canonical path of an import and starts parsing it if it has not been discovered before
+		 */
+		private String resolveImport(String importPath) {
+			File importFile;
+			try {
+				importFile = new File(context.workingDir(), importPath).getCanonicalFile();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			
+			String path = importFile.getAbsolutePath();
+			
+			// Only the first task that discovers a file will parse it
+			if (context.discoveredPaths().add(path)) {
+				ParseTask task = new ParseTask(context, importFile);
+				tasks.add(task);
+				task.fork();
+			}
+			
+			return path;
+		}
+	}
+	
+	public void compile() throws IOException, CompilerException {
+		CompilerConfiguration config = ampleConfig.getConfiguration();
+		File inputFile = config.getSourceFile();
+		File workingDir = config.getWorkingDirectory();
+		
+		LOGGER.info("");
+		LOGGER.info("Import Files:");
+		
+		// Cache files are written in the background while the files are linked
+		ExecutorService cacheWriter = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Ample Cache Writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		CacheContext cache = new CacheContext(
+			cacheWriter,
+			CacheManifest.load(config.getOutputFolder(), config.getChecksumType()),
+			config.useCacheArchive() ? CacheArchive.open(config.getOutputFolder()) : null,
+			openSharedCache(config)
+		);
+		
+		IntermediateFile file;
+		try {
+			List<ParsedFile> parsedFiles = parseImports(workingDir, inputFile, cache);
+			if (config.verifyCache()) {
+				verifyCache(parsedFiles);
+			}
+			
+			List<LinkableObject> list = new ArrayList<>(parsedFiles.size());
+			for (ParsedFile parsed : parsedFiles) {
+				list.add(parsed.obj());
+			}
+			
+			// Combine all linkable objects into one instruction file
+			AmpleLinker linker = new AmpleLinker(ampleConfig);
+			file = linker.link(list, createIntermediateCache(cache));
+			
+			finishCacheWrites(parsedFiles);
+			
+			try {
+				cache.manifest().save();
+			} catch (IOException e) {
+				LOGGER.error("Failed to write cache manifest", e);
+			}
+			
+			if (cache.archive() != null) {
+				try {
+					cache.archive().save();
+				} catch (IOException e) {
+					LOGGER.error("Failed to write cache archive", e);
+				}
+			}
+		} finally {
+			cacheWriter.shutdown();
+			
+			try {
+				// Wait for the intermediate code to be written
+				cacheWriter.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			if (cache.archive() != null) {
+				try {
+					cache.archive().close();
+				} catch (IOException e) {
+					LOGGER.error("Failed to close cache archive", e);
+				}
+			}
+			
+			if (cache.shared() != null) {
+				try {
+					cache.shared().evict();
+				} catch (IOException e) {
+					LOGGER.error("Failed to evict shared cache entries", e);
+				}
+			}
+		}
 		
 		try {
 			AmpleRunner runner = new AmpleRunner();
@@ -1,15 +1,21 @@
 package me.hardcoded.compiler.context;
 
 import me.hardcoded.configuration.CompilerConfiguration;
+import me.hardcoded.lexer.SymbolTable;
+import me.hardcoded.utils.FileSources;
 import me.hardcoded.visualization.VisualizationHandler;
 
 public class AmpleConfig {
 	private final CompilerConfiguration configuration;
 	private final VisualizationHandler visualizationHandler;
+	private final SymbolTable symbolTable;
+	private final FileSources fileSources;
 	
 	public AmpleConfig(CompilerConfiguration configuration) {
 		this.configuration = configuration;
 		this.visualizationHandler = new VisualizationHandler();
+		this.symbolTable = new SymbolTable();
+		this.fileSources = new FileSources();
 	}
 	
 	public CompilerConfiguration getConfiguration() {
@@ -19,4 +25,18 @@ public class AmpleConfig {
 	public VisualizationHandler getVisualizationHandler() {
 		return visualizationHandler;
 	}
+	
+	/**
+	 * Returns the table of identifiers shared by all files of this compilation
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+	
+	/**
+	 * Returns the sources of the files of this compilation
+	 */
+	public FileSources getFileSources() {
+		return fileSources;
+	}
 }
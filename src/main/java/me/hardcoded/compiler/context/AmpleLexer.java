@@ -41,8 +41,24 @@ public class AmpleLexer {
 			.addRule(Type.SHIFT_RIGHT, i -> i.addString(">>"))
 			
 			// Atoms
-			.addRule(Type.IDENTIFIER, i -> i.addRegex("[a-zA-Z_][a-zA-Z0-9_]*"))
-			.addRule(Type.BOOLEAN, i -> i.addStrings("true", "false"))
+			.addRule(Type.IDENTIFIER, i -> i
+				.addRegex("[a-zA-Z_][a-zA-Z0-9_]*")
+				
+				// Keywords are classified after the identifier has been matched
+				.addKeywords(Type.BOOLEAN, "true", "false")
+				.addKeyword(Type.FUNC, "fn")
+				.addKeyword(Type.RETURN, "ret")
+				.addKeyword(Type.COMPILER, "compiler")
+				.addKeyword(Type.IF, "if")
+				.addKeyword(Type.FOR, "for")
+				.addKeyword(Type.ELSE, "else")
+				.addKeyword(Type.WHILE, "while")
+				.addKeyword(Type.CONTINUE, "continue")
+				.addKeyword(Type.BREAK, "break")
+				.addKeyword(Type.NAMESPACE, "namespace")
+				.addKeyword(Type.EXPORT, "export")
+				.addKeywords(Type.RESERVED, "const", "volatile", "synchronized", "final", "pub", "priv", "module", "using")
+			)
 			.addRule(Type.CHARACTER, i -> i.addMultiline("'", "\\", "'"))
 			.addRule(Type.STRING, i -> i.addMultiline("\"", "\\", "\""))
 			.addRule(Type.DOUBLE, i -> i.addRegex("[0-9]+(\\.[0-9]+)?[dD]?"))
@@ -88,26 +104,10 @@ public class AmpleLexer {
 			.addRule(Type.NAMESPACE_OPERATOR, i -> i.addString("::"))
 			
 			// Preprocessors
-			.addRule(Type.FUNC, i -> i.addString("fn"))
 			.addRule(Type.LINK, i -> i.addString("@link"))
-			.addRule(Type.RETURN, i -> i.addString("ret"))
 			.addRule(Type.COLON, i -> i.addString(":"))
 			.addRule(Type.COMMA, i -> i.addString(","))
-			.addRule(Type.COMPILER, i -> i.addString("compiler"))
-			
-			// Keywords
-			.addRule(Type.IF, i -> i.addString("if"))
-			.addRule(Type.FOR, i -> i.addString("for"))
-			.addRule(Type.ELSE, i -> i.addString("else"))
-			.addRule(Type.WHILE, i -> i.addString("while"))
-			.addRule(Type.CONTINUE, i -> i.addString("continue"))
-			.addRule(Type.BREAK, i -> i.addString("break"))
-			.addRule(Type.NAMESPACE, i -> i.addString("namespace"))
-			.addRule(Type.EXPORT, i -> i.addString("export"))
-			
-			// Reserved
-			.addRule(Type.RESERVED, i -> i.addStrings("const", "volatile", "synchronized", "final", "pub", "priv", "module", "using"))
 			
-			.toImmutable();
+			.toCompiled();
 	}
 }
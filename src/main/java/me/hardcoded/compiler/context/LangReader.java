@@ -3,41 +3,39 @@ package me.hardcoded.compiler.context;
 import me.hardcoded.compiler.impl.ISyntaxPos;
 import me.hardcoded.lexer.Token;
 import me.hardcoded.lexer.Token.Type;
+import me.hardcoded.lexer.TokenSource;
 import me.hardcoded.utils.DebugUtils;
+import me.hardcoded.utils.LineIndex;
 import me.hardcoded.utils.Position;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
-import java.util.List;
 
 public class LangReader {
 	private static final Logger LOGGER = LogManager.getLogger(LangReader.class);
 	
-	private final List<Token> list;
+	private final TokenSource source;
+	private final String path;
 	private final Token start;
-	private final Token end;
+	private Token end;
 	private int index;
 	
-	private LangReader(File file, List<Token> list) {
-		this.list = list;
-		this.start = new Token(Type.WHITESPACE, ISyntaxPos.empty(file.getAbsolutePath()));
-		
-		if (!list.isEmpty()) {
-			Token t1 = list.get(list.size() - 1);
-			Position end = t1.syntaxPosition.getEndPosition();
-			this.end = new Token(Type.EOF, ISyntaxPos.of(file.getAbsolutePath(), end, end));
-		} else {
-			this.end = new Token(Type.EOF, ISyntaxPos.empty(file.getAbsolutePath()));
-		}
+	private LangReader(File file, TokenSource source) {
+		this.source = source;
+		this.path = file.getAbsolutePath();
+		this.start = new Token(Type.WHITESPACE, ISyntaxPos.empty(path));
 	}
 	
 	public void advance() {
 		index++;
 	}
 	
-	public int remaining() {
-		return list.size() - index;
+	/**
+	 * Returns {@code true} if there are more tokens to read
+	 */
+	public boolean hasRemaining() {
+		return source.has(index);
 	}
 	
 	public Token token() {
@@ -52,23 +50,31 @@ public class LangReader {
 	}
 	
 	public String value() {
-		return token().value;
+		if (DebugUtils.DEBUG_LANGCONTEXT_STACK_TRACE) {
+			return token().value;
+		}
+		
+		return isInside(index) ? source.getValue(index) : peak(0).value;
 	}
 	
 	public Type type() {
-		return token().type;
+		if (DebugUtils.DEBUG_LANGCONTEXT_STACK_TRACE) {
+			return token().type;
+		}
+		
+		return peakType(0);
 	}
 	
 	public Position position() {
-		return token().syntaxPosition.getStartPosition();
+		return isInside(index) ? source.getStartPosition(index) : peak(0).syntaxPosition.getStartPosition();
 	}
 	
 	public Position lastPositionEnd() {
-		return peak(-1).syntaxPosition.getEndPosition();
+		return peakPositionEnd(-1);
 	}
 	
 	public Position nextPositionEnd() {
-		return peak(0).syntaxPosition.getEndPosition();
+		return peakPositionEnd(0);
 	}
 	
 	public ISyntaxPos syntaxPosition() {
@@ -86,9 +92,52 @@ public class LangReader {
 		int idx = index + offset;
 		if (idx < 0)
 			return start;
-		if (idx >= list.size())
-			return end;
-		return list.get(idx);
+		if (!source.has(idx))
+			return end();
+		return source.getToken(idx);
+	}
+	
+	private Token end() {
+		if (end == null) {
+			Position position = source.getLastPosition();
+			end = new Token(Type.EOF, ISyntaxPos.of(path, position, position));
+		}
+		
+		return end;
+	}
+	
+	/**
+	 * Returns the type of the token at the specified relative position without creating the token.
+	 *
+	 * @param offset
+	 * @return the type of the token at the specified relative position
+	 */
+	public Type peakType(int offset) {
+		int idx = index + offset;
+		return isInside(idx) ? source.getType(idx) : peak(offset).type;
+	}
+	
+	/**
+	 * Returns the text of the source that is read
+	 */
+	public CharSequence getText() {
+		return source.getText();
+	}
+	
+	/**
+	 * Returns the line index of the source that is read
+	 */
+	public LineIndex getLineIndex() {
+		return source.getLineIndex();
+	}
+	
+	private Position peakPositionEnd(int offset) {
+		int idx = index + offset;
+		return isInside(idx) ? source.getEndPosition(idx) : peak(offset).syntaxPosition.getEndPosition();
+	}
+	
+	private boolean isInside(int idx) {
+		return idx >= 0 && source.has(idx);
 	}
 	
 	public String peakString(int offset, int count) {
@@ -106,7 +155,7 @@ public class LangReader {
 		return value();
 	}
 	
-	public static LangReader wrap(File file, List<Token> list) {
-		return new LangReader(file, list);
+	public static LangReader wrap(File file, TokenSource source) {
+		return new LangReader(file, source);
 	}
 }
@@ -1,6 +1,8 @@
 package me.hardcoded.compiler.impl;
 
 import me.hardcoded.utils.ImmutableSyntaxImpl;
+import me.hardcoded.utils.LineIndex;
+import me.hardcoded.utils.OffsetSyntaxImpl;
 import me.hardcoded.utils.Position;
 
 import java.io.File;
@@ -37,4 +39,11 @@ public interface ISyntaxPos {
 	static ISyntaxPos of(File file, Position start, Position end) {
 		return new ImmutableSyntaxImpl(file.getAbsolutePath(), start, end);
 	}
+	
+	/**
+	 * Returns a position where the line and column is computed from the offsets when it is requested
+	 */
+	static ISyntaxPos of(String path, LineIndex lines, int start, int end) {
+		return new OffsetSyntaxImpl(path, lines, start, end);
+	}
 }
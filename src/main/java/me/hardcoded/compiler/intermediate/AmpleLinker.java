@@ -2,19 +2,29 @@ package me.hardcoded.compiler.intermediate;
 
 import me.hardcoded.compiler.context.AmpleConfig;
 import me.hardcoded.compiler.errors.CompilerException;
+import me.hardcoded.compiler.errors.InstException;
 import me.hardcoded.compiler.errors.ParseException;
 import me.hardcoded.compiler.impl.ISyntaxPos;
 import me.hardcoded.compiler.intermediate.generator.IntermediateGenerator;
+import me.hardcoded.compiler.intermediate.generator.SharedReferences;
 import me.hardcoded.compiler.intermediate.inst.Inst;
 import me.hardcoded.compiler.intermediate.inst.IntermediateFile;
 import me.hardcoded.compiler.intermediate.inst.Opcode;
 import me.hardcoded.compiler.intermediate.inst.Procedure;
+import me.hardcoded.compiler.intermediate.serial.IntermediateDeserializer;
+import me.hardcoded.compiler.intermediate.serial.IntermediateSerializer;
 import me.hardcoded.compiler.parser.LinkableObject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class is responsible for linking {@link LinkableObject}.
@@ -37,20 +47,35 @@ public class AmpleLinker {
 	// TODO: Implement an LinkableIntermediateFile
 	// TODO: Implement an assembler language for ample intermediate instructions
 	public IntermediateFile link(List<LinkableObject> list) throws CompilerException {
+		return link(list, null);
+	}
+	
+	/**
+	 * Link the objects and reuse the cached intermediate code of objects that did not change
+	 *
+	 * @param list  the objects to link
+	 * @param cache the cache of the intermediate code or {@code null} if no cache should be used
+	 */
+	public IntermediateFile link(List<LinkableObject> list, IntermediateCache cache) throws CompilerException {
 		IntermediateFile file = new IntermediateFile();
 		
-		ExportMap exportMap = new ExportMap();
+		ExportMap exportMap = new ExportMap(ampleConfig.getFileSources());
 		if (!checkImports(exportMap, list)) {
 			throw new RuntimeException("Project is not linkable");
 		}
 		
 		LOGGER.debug("");
 		LOGGER.debug("Generate Intermediate File:");
-		IntermediateGenerator generator = new IntermediateGenerator(file, exportMap);
-		for (int i = list.size() - 1; i >= 0; i--) {
-			// Include each linkable object in the intermediate generator
-			LinkableObject link = list.get(i);
-			
+		
+		// Procedures are added in reverse order of the linkable objects
+		List<LinkableObject> order = new ArrayList<>(list);
+		Collections.reverse(order);
+		
+		// Functions and exported variables are shared between the objects so they are wrapped first
+		SharedReferences sharedReferences = SharedReferences.create(exportMap, order);
+		
+		List<ForkJoinTask<IntermediateFile>> tasks = new ArrayList<>();
+		for (LinkableObject link : order) {
 			Path path = link.getFile().toPath();
 			if (path.isAbsolute()) {
 				LOGGER.debug(" - {} : {}", link.getChecksum(), ampleConfig.getConfiguration().getWorkingDirectory().toPath().relativize(path));
@@ -59,7 +84,14 @@ public class AmpleLinker {
 			}
 			//			LOGGER.debug("\n{}", ParseUtil.stat(link.getProgram()));
 			
-			generator.generate(link);
+			// Each linkable object is generated by its own intermediate generator
+			tasks.add(ForkJoinPool.commonPool().submit(() -> generate(link, exportMap, sharedReferences, cache)));
+		}
+		
+		for (ForkJoinTask<IntermediateFile> task : tasks) {
+			for (Procedure proc : join(task).getProcedures()) {
+				file.addProcedure(proc);
+			}
 		}
 		
 		LOGGER.debug("");
@@ -85,6 +117,61 @@ public class AmpleLinker {
 		return file;
 	}
 	
+	private static IntermediateFile generate(LinkableObject link, ExportMap exportMap, SharedReferences sharedReferences, IntermediateCache cache) throws InstException {
+		IntermediateFile objectFile = new IntermediateFile();
+		if (cache != null) {
+			try {
+				ByteBuffer buffer = cache.read(link.getFile());
+				List<Procedure> procedures = buffer == null ? null : IntermediateDeserializer.deserializeProcedures(buffer, link, sharedReferences);
+				
+				if (procedures != null) {
+					LOGGER.debug(" - [CACHE] {}", link.getFile());
+					for (Procedure procedure : procedures) {
+						objectFile.addProcedure(procedure);
+					}
+					
+					return objectFile;
+				}
+			} catch (Exception e) {
+				LOGGER.warn("Failed to read cached intermediate code of '{}'", link.getFile(), e);
+			}
+		}
+		
+		new IntermediateGenerator(objectFile, exportMap, sharedReferences).generate(link);
+		
+		if (cache != null) {
+			byte[] bytes = IntermediateSerializer.serializeProcedures(link, objectFile.getProcedures(), sharedReferences);
+			if (bytes != null) {
+				cache.write(link.getFile(), bytes);
+			}
+		}
+		
+		return objectFile;
+	}
+	
+	/**
+	 * Wait for the task and rethrow the exception that caused it to fail
+	 */
+	private static IntermediateFile join(ForkJoinTask<IntermediateFile> task) throws CompilerException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CompilerException compilerException) {
+				throw compilerException;
+			}
+			
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			
+			throw new RuntimeException(cause);
+		}
+	}
+	
 	private boolean checkImports(ExportMap exportMap, List<LinkableObject> list) throws ParseException {
 		for (LinkableObject link : list) {
 			if (!exportMap.add(link)) {
@@ -6,6 +6,7 @@ import me.hardcoded.compiler.parser.LinkableObject;
 import me.hardcoded.compiler.parser.type.Primitives;
 import me.hardcoded.compiler.parser.type.Reference;
 import me.hardcoded.compiler.parser.type.ReferenceSyntax;
+import me.hardcoded.utils.FileSources;
 import me.hardcoded.utils.error.ErrorUtil;
 import me.hardcoded.utils.types.MangledFunctionMap;
 import org.apache.logging.log4j.LogManager;
@@ -19,10 +20,19 @@ public class ExportMap {
 	private static final Logger LOGGER = LogManager.getLogger(ExportMap.class);
 	final MangledFunctionMap functions;
 	final Map<String, Reference> variables;
+	private final FileSources fileSources;
 	
-	public ExportMap() {
+	public ExportMap(FileSources fileSources) {
 		functions = new MangledFunctionMap();
 		variables = new HashMap<>();
+		this.fileSources = fileSources;
+	}
+	
+	/**
+	 * Returns the sources used to show the line of an error
+	 */
+	public FileSources getFileSources() {
+		return fileSources;
 	}
 	
 	public void clear() {
@@ -37,7 +47,7 @@ public class ExportMap {
 			if (reference.isFunction()) {
 				String mangledName = reference.getMangledName();
 				if (mangledName == null) {
-					throw new ParseException(ErrorUtil.createFullError(referenceSyntax.getSyntaxPosition(),
+					throw new ParseException(ErrorUtil.createFullError(referenceSyntax.getSyntaxPosition(), fileSources,
 						"Exported function reference has missing mangled name (%s)".formatted(
 							reference.getName()
 						)
@@ -47,7 +57,7 @@ public class ExportMap {
 				if (!functions.put(reference)) {
 					Reference blocker = functions.getBlocker(reference);
 					
-					throw new ParseException(ErrorUtil.createFullError(referenceSyntax.getSyntaxPosition(),
+					throw new ParseException(ErrorUtil.createFullError(referenceSyntax.getSyntaxPosition(), fileSources,
 						"The project already exports a function '%s' (%s)".formatted(
 							reference.getName(),
 							AmpleMangler.demangleFunction(blocker.getMangledName())
@@ -57,7 +67,7 @@ public class ExportMap {
 			}
 			
 			if (reference.isVariable() && variables.put(reference.getName(), reference) != null) {
-				throw new ParseException(ErrorUtil.createFullError(referenceSyntax.getSyntaxPosition(),
+				throw new ParseException(ErrorUtil.createFullError(referenceSyntax.getSyntaxPosition(), fileSources,
 					"The project already exports a variable '%s'".formatted(
 						reference.getName()
 					)
@@ -110,7 +120,7 @@ public class ExportMap {
 			if (getReference(reference) == null) {
 				LOGGER.warn("The imported symbol '{}' was not found in the project", reference.getPath());
 				LOGGER.warn("{}", ErrorUtil.createFullError(
-					referenceSyntax.getSyntaxPosition(),
+					referenceSyntax.getSyntaxPosition(), fileSources,
 					"Missing symbol '%s'%s".formatted(
 						reference.getPath(),
 						reference.getMangledName() == null ? "" : (" [" + AmpleMangler.demangleFunction(reference.getMangledName()) + "]")
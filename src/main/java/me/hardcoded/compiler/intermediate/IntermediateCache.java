@@ -0,0 +1,28 @@
+package me.hardcoded.compiler.intermediate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage for the intermediate code generated for each source file.
+ *
+ * @author HardCoded
+ */
+public interface IntermediateCache {
+	/**
+	 * Returns the cached data of a source file or {@code null} if the file has not been cached
+	 *
+	 * @param file the source file
+	 * @throws IOException if the cached data could not be read
+	 */
+	ByteBuffer read(File file) throws IOException;
+	
+	/**
+	 * Store the data of a source file
+	 *
+	 * @param file  the source file
+	 * @param bytes the data
+	 */
+	void write(File file, byte[] bytes);
+}
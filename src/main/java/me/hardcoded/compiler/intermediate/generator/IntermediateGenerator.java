@@ -25,6 +25,7 @@ public class IntermediateGenerator {
 	private final ExportMap exportMap;
 	
 	// Used for reference creation
+	private final SharedReferences sharedReferences;
 	private final Map<Reference, InstRef> wrappedReferences;
 	private int count;
 	private int funcCount;
@@ -33,7 +34,20 @@ public class IntermediateGenerator {
 	private InstRef continueBranch;
 	
 	public IntermediateGenerator(IntermediateFile file, ExportMap exportMap) {
+		this(file, exportMap, SharedReferences.EMPTY);
+	}
+	
+	/**
+	 * Create a generator that uses references that were wrapped before generation.
+	 * The shared references are never modified by this generator.
+	 *
+	 * @param file             the file to add procedures to
+	 * @param exportMap        the export map
+	 * @param sharedReferences the wrapped references
+	 */
+	public IntermediateGenerator(IntermediateFile file, ExportMap exportMap, SharedReferences sharedReferences) {
 		this.file = file;
+		this.sharedReferences = sharedReferences;
 		this.wrappedReferences = new HashMap<>();
 		this.exportMap = exportMap;
 	}
@@ -202,6 +216,7 @@ public class IntermediateGenerator {
 					stat.getSyntaxPosition().getStartPosition(),
 					stat.getSyntaxPosition().getStartPosition()
 				),
+				exportMap.getFileSources(),
 				"Could not resolve function: " + e.getMessage()
 			));
 		}
@@ -227,6 +242,7 @@ public class IntermediateGenerator {
 					stat.getSyntaxPosition().getStartPosition(),
 					stat.getSyntaxPosition().getStartPosition()
 				),
+				exportMap.getFileSources(),
 				"Missing return statement '%s'".formatted(
 					stat.getReference()
 				)
@@ -300,7 +316,7 @@ public class IntermediateGenerator {
 		}
 		
 		if (!holder.getValueType().equals(value.getValueType())) {
-			throw new InstException(ErrorUtil.createFullError(stat.getValue().getSyntaxPosition(),
+			throw new InstException(ErrorUtil.createFullError(stat.getValue().getSyntaxPosition(), exportMap.getFileSources(),
 				"Left and Right side does not match (%s != %s)".formatted(
 					holder.getValueType().toShortName(),
 					value.getValueType().toShortName()
@@ -414,7 +430,7 @@ public class IntermediateGenerator {
 			.addParam(new InstParam.Ref(right)));
 		
 		if (!left.getValueType().equals(right.getValueType())) {
-			throw new InstException(ErrorUtil.createFullError(expr.getSyntaxPosition(),
+			throw new InstException(ErrorUtil.createFullError(expr.getSyntaxPosition(), exportMap.getFileSources(),
 				"Left and Right side does not match (%s != %s)".formatted(
 					left.getValueType().toShortName(),
 					right.getValueType().toShortName()
@@ -656,7 +672,11 @@ public class IntermediateGenerator {
 			reference = result;
 		}
 		
-		InstRef result = wrappedReferences.get(reference);
+		InstRef result = sharedReferences.get(reference);
+		if (result == null) {
+			result = wrappedReferences.get(reference);
+		}
+		
 		if (result != null) {
 			return result;
 		}
@@ -677,7 +697,11 @@ public class IntermediateGenerator {
 			reference = exportMap.getMangledFunctionReference(reference, parameters);
 		}
 		
-		InstRef result = wrappedReferences.get(reference);
+		InstRef result = sharedReferences.get(reference);
+		if (result == null) {
+			result = wrappedReferences.get(reference);
+		}
+		
 		if (result != null) {
 			return result;
 		}
@@ -0,0 +1,157 @@
+package me.hardcoded.compiler.intermediate.generator;
+
+import me.hardcoded.compiler.intermediate.ExportMap;
+import me.hardcoded.compiler.intermediate.inst.InstRef;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.compiler.parser.stat.FuncStat;
+import me.hardcoded.compiler.parser.stat.NamespaceStat;
+import me.hardcoded.compiler.parser.stat.Stat;
+import me.hardcoded.compiler.parser.stat.VarStat;
+import me.hardcoded.compiler.parser.type.Reference;
+
+import java.util.*;
+
+/**
+ * The references that are shared between all linkable objects of a project.
+ *
+ * <p>Functions and exported variables are wrapped before any object is generated. Functions
+ * are numbered in the order they are declared so their ids do not depend on the order the
+ * objects are generated in. Each shared reference also remembers the object that declared it
+ * and its position among the declarations of that object, this allows cached intermediate
+ * code to find the reference again in a later compilation.
+ *
+ * <p>This class is not modified after it has been created.
+ *
+ * @author HardCoded
+ */
+public class SharedReferences {
+	public static final SharedReferences EMPTY = new SharedReferences();
+	
+	private final Map<Reference, InstRef> references;
+	private final Map<InstRef, Boolean> wrapped;
+	private final Map<InstRef, Declaration> declarations;
+	private final Map<String, LinkableObject> owners;
+	private final Map<Declaration, InstRef> declared;
+	
+	private SharedReferences() {
+		this.references = new HashMap<>();
+		this.wrapped = new IdentityHashMap<>();
+		this.declarations = new IdentityHashMap<>();
+		this.owners = new HashMap<>();
+		this.declared = new HashMap<>();
+	}
+	
+	/**
+	 * Wrap all functions and exported variables of the objects.
+	 *
+	 * @param exportMap the export map
+	 * @param list      the objects in the order their procedures are added
+	 */
+	public static SharedReferences create(ExportMap exportMap, List<LinkableObject> list) {
+		SharedReferences shared = new SharedReferences();
+		int funcCount = 0;
+		int varCount = 0;
+		
+		for (LinkableObject obj : list) {
+			String path = obj.getFile().getAbsolutePath();
+			shared.owners.put(path, obj);
+			
+			LinkedList<Stat> stats = new LinkedList<>(obj.getProgram().getElements());
+			int ordinal = 0;
+			
+			while (!stats.isEmpty()) {
+				Stat s = stats.poll();
+				
+				if (s instanceof NamespaceStat) {
+					stats.addAll(0, ((NamespaceStat) s).getElements());
+					continue;
+				}
+				
+				Reference declaredReference;
+				int id;
+				if (s instanceof FuncStat stat) {
+					declaredReference = stat.getReference();
+					id = funcCount++;
+				} else if (s instanceof VarStat stat && stat.getReference().isExported()) {
+					declaredReference = stat.getReference();
+					id = varCount++;
+				} else {
+					continue;
+				}
+				
+				Declaration declaration = new Declaration(path, ordinal++);
+				
+				Reference reference = declaredReference;
+				if (reference.isImported() || reference.isExported()) {
+					reference = exportMap.getReference(reference);
+					
+					if (reference == null) {
+						// The generator will report this error
+						continue;
+					}
+				}
+				
+				InstRef result = shared.references.get(reference);
+				if (result == null) {
+					result = new InstRef(reference.getName(), reference.getNamespace(), reference.getValueType(), id, 0);
+					result.setType(reference.getType());
+					result.setMangledName(reference.getMangledName());
+					shared.references.put(reference, result);
+					shared.wrapped.put(result, true);
+				}
+				
+				// The object that declares the canonical reference owns it
+				if (declaredReference == reference && !shared.declarations.containsKey(result)) {
+					shared.declarations.put(result, declaration);
+					shared.declared.put(declaration, result);
+				}
+			}
+		}
+		
+		return shared;
+	}
+	
+	/**
+	 * Returns the wrapped reference of a canonical reference or {@code null} if it is not shared
+	 */
+	public InstRef get(Reference reference) {
+		return references.get(reference);
+	}
+	
+	/**
+	 * Returns if the wrapped reference is shared
+	 */
+	public boolean contains(InstRef reference) {
+		return wrapped.containsKey(reference);
+	}
+	
+	/**
+	 * Returns where a wrapped reference was declared or {@code null} if it is not shared
+	 */
+	public Declaration getDeclaration(InstRef reference) {
+		return declarations.get(reference);
+	}
+	
+	/**
+	 * Returns the wrapped reference of a declaration or {@code null} if no such declaration exists
+	 */
+	public InstRef getReference(Declaration declaration) {
+		return declared.get(declaration);
+	}
+	
+	/**
+	 * Returns the object of a path or {@code null} if the object is not part of the project
+	 */
+	public LinkableObject getOwner(String path) {
+		return owners.get(path);
+	}
+	
+	/**
+	 * The position of a declaration inside the object that declared it
+	 *
+	 * @param path    the absolute path of the object
+	 * @param ordinal the index of the declaration among the functions and exported variables of the object
+	 */
+	public record Declaration(String path, int ordinal) {
+	}
+}
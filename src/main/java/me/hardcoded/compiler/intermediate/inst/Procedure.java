@@ -19,6 +19,12 @@ public class Procedure {
 		this.type = type;
 	}
 	
+	public Procedure(ProcedureType type, InstRef reference, List<InstRef> parameters) {
+		this(type);
+		this.reference = reference;
+		this.parameters = parameters;
+	}
+	
 	public ProcedureType getType() {
 		return type;
 	}
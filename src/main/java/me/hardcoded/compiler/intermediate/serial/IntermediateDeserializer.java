@@ -0,0 +1,181 @@
+package me.hardcoded.compiler.intermediate.serial;
+
+import me.hardcoded.compiler.impl.ISyntaxPos;
+import me.hardcoded.compiler.intermediate.generator.SharedReferences;
+import me.hardcoded.compiler.intermediate.inst.*;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.compiler.parser.serial.SerialReader;
+import me.hardcoded.compiler.parser.type.Namespace;
+import me.hardcoded.compiler.parser.type.ValueType;
+import me.hardcoded.utils.Position;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deserializes the procedures written by {@link IntermediateSerializer}.
+ *
+ * @author HardCoded
+ */
+public class IntermediateDeserializer {
+	static final int MAGIC = 0x414d4946; // 'AMIF' A Intermediate File
+	static final int VERSION = 2;
+	
+	private static final Opcode[] OPCODES = Opcode.values();
+	private static final Procedure.ProcedureType[] PROCEDURE_TYPES = Procedure.ProcedureType.values();
+	
+	private final SharedReferences sharedReferences;
+	private final List<String> dependencies;
+	private final List<String> strings;
+	private final List<InstRef> references;
+	
+	private IntermediateDeserializer(SharedReferences sharedReferences) {
+		this.sharedReferences = sharedReferences;
+		this.dependencies = new ArrayList<>();
+		this.strings = new ArrayList<>();
+		this.references = new ArrayList<>();
+	}
+	
+	/**
+	 * Returns the cached procedures of an object or {@code null} if the procedures are outdated
+	 *
+	 * @param buffer           the serialized procedures
+	 * @param obj              the object the procedures were generated from
+	 * @param sharedReferences the references shared between all objects
+	 * @throws IOException if the data was malformed
+	 */
+	public static List<Procedure> deserializeProcedures(ByteBuffer buffer, LinkableObject obj, SharedReferences sharedReferences) throws IOException {
+		IntermediateDeserializer deserializer = new IntermediateDeserializer(sharedReferences);
+		try {
+			return deserializer.deserialize(new SerialReader(buffer), obj);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Data is truncated", e);
+		}
+	}
+	
+	private List<Procedure> deserialize(SerialReader in, LinkableObject obj) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Wrong magic value");
+		}
+		
+		if (in.readInt() != VERSION || !in.readUTF().equals(obj.getChecksum())) {
+			return null;
+		}
+		
+		// The procedures are only valid while the objects that declared the shared references are unchanged
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
+			String path = in.readUTF();
+			String checksum = in.readUTF();
+			
+			LinkableObject owner = sharedReferences.getOwner(path);
+			if (owner == null || !owner.getChecksum().equals(checksum)) {
+				return null;
+			}
+			
+			dependencies.add(path);
+		}
+		
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
+			strings.add(in.readUTF());
+		}
+		
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
+			InstRef reference = readReferenceDefinition(in);
+			if (reference == null) {
+				return null;
+			}
+			
+			references.add(reference);
+		}
+		
+		List<Procedure> procedures = new ArrayList<>();
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
+			Procedure.ProcedureType type = PROCEDURE_TYPES[in.readByte()];
+			InstRef reference = readReference(in);
+			
+			List<InstRef> parameters = null;
+			int parameterCount = in.readVarInt();
+			if (parameterCount > 0) {
+				parameters = new ArrayList<>(parameterCount - 1);
+				for (int j = 1; j < parameterCount; j++) {
+					parameters.add(readReference(in));
+				}
+			}
+			
+			Procedure procedure = new Procedure(type, reference, parameters);
+			for (int j = 0, instCount = in.readVarInt(); j < instCount; j++) {
+				procedure.addInst(readInst(in));
+			}
+			
+			procedures.add(procedure);
+		}
+		
+		return procedures;
+	}
+	
+	/**
+	 * Returns the reference of a definition or {@code null} if a shared reference no longer exists
+	 */
+	private InstRef readReferenceDefinition(SerialReader in) throws IOException {
+		if (in.readByte() == 1) {
+			String path = dependencies.get(in.readVarInt());
+			int ordinal = in.readVarInt();
+			return sharedReferences.getReference(new SharedReferences.Declaration(path, ordinal));
+		}
+		
+		String name = readString(in);
+		String mangledName = readString(in);
+		Namespace namespace = new Namespace(readString(in));
+		ValueType valueType = readValueType(in);
+		int id = in.readVarInt() - 1;
+		int flags = in.readVarInt();
+		
+		InstRef reference = new InstRef(name, namespace, valueType, id, flags);
+		reference.setMangledName(mangledName);
+		return reference;
+	}
+	
+	private InstRef readReference(SerialReader in) throws IOException {
+		int index = in.readVarInt();
+		return index == 0 ? null : references.get(index - 1);
+	}
+	
+	private Inst readInst(SerialReader in) throws IOException {
+		Opcode opcode = OPCODES[in.readByte()];
+		Inst inst = new Inst(opcode, readSyntaxPosition(in));
+		
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
+			switch (in.readByte()) {
+				case 0 -> inst.addParam(new InstParam.Ref(readReference(in)));
+				case 1 -> inst.addParam(new InstParam.Num(readValueType(in), in.readLong()));
+				case 2 -> inst.addParam(new InstParam.Str(readString(in)));
+				default -> throw new IOException("Unknown parameter type");
+			}
+		}
+		
+		return inst;
+	}
+	
+	private ISyntaxPos readSyntaxPosition(SerialReader in) throws IOException {
+		String path = readString(in);
+		Position start = new Position(in.readVarInt(), in.readVarInt());
+		Position end = new Position(in.readVarInt(), in.readVarInt());
+		return ISyntaxPos.of(path, start, end);
+	}
+	
+	private ValueType readValueType(SerialReader in) throws IOException {
+		String name = readString(in);
+		int size = in.readVarInt();
+		int depth = in.readVarInt();
+		int flags = in.readVarInt();
+		return new ValueType(name, size, depth, flags);
+	}
+	
+	private String readString(SerialReader in) throws IOException {
+		int index = in.readVarInt();
+		return index == 0 ? null : strings.get(index - 1);
+	}
+}
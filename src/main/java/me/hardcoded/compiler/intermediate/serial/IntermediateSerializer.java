@@ -0,0 +1,192 @@
+package me.hardcoded.compiler.intermediate.serial;
+
+import me.hardcoded.compiler.impl.ISyntaxPos;
+import me.hardcoded.compiler.intermediate.generator.SharedReferences;
+import me.hardcoded.compiler.intermediate.inst.Inst;
+import me.hardcoded.compiler.intermediate.inst.InstParam;
+import me.hardcoded.compiler.intermediate.inst.InstRef;
+import me.hardcoded.compiler.intermediate.inst.Procedure;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.compiler.parser.serial.SerialWriter;
+import me.hardcoded.compiler.parser.type.ValueType;
+import me.hardcoded.utils.Position;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes the procedures generated for a linkable object.
+ *
+ * <p>References that are local to the object are written completely. References that are
+ * shared with other objects are written as the position of their declaration so they can be
+ * resolved against the shared references of a later compilation. The checksum of each object
+ * that declares a used shared reference is stored so the procedures are only reused while all
+ * of those objects are unchanged.
+ *
+ * @author HardCoded
+ */
+public class IntermediateSerializer {
+	private final SharedReferences sharedReferences;
+	private final Map<String, Integer> strings;
+	private final Map<String, Integer> dependencies;
+	private final Map<InstRef, Integer> references;
+	private boolean cacheable;
+	
+	private IntermediateSerializer(SharedReferences sharedReferences) {
+		this.sharedReferences = sharedReferences;
+		this.strings = new LinkedHashMap<>();
+		this.dependencies = new LinkedHashMap<>();
+		this.references = new IdentityHashMap<>();
+		this.cacheable = true;
+	}
+	
+	/**
+	 * Returns the serialized procedures or {@code null} if the procedures can not be cached
+	 *
+	 * @param obj              the object the procedures were generated from
+	 * @param procedures       the procedures
+	 * @param sharedReferences the references shared between all objects
+	 */
+	public static byte[] serializeProcedures(LinkableObject obj, List<Procedure> procedures, SharedReferences sharedReferences) {
+		IntermediateSerializer serializer = new IntermediateSerializer(sharedReferences);
+		
+		try {
+			return serializer.serialize(obj, procedures);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private byte[] serialize(LinkableObject obj, List<Procedure> procedures) throws IOException {
+		SerialWriter refs = new SerialWriter();
+		SerialWriter out = new SerialWriter();
+		
+		out.writeVarInt(procedures.size());
+		for (Procedure procedure : procedures) {
+			out.writeByte(procedure.getType().ordinal());
+			writeReference(procedure.getReference(), refs, out);
+			
+			List<InstRef> parameters = procedure.getParameters();
+			if (parameters == null) {
+				out.writeVarInt(0);
+			} else {
+				out.writeVarInt(parameters.size() + 1);
+				for (InstRef parameter : parameters) {
+					writeReference(parameter, refs, out);
+				}
+			}
+			
+			out.writeVarInt(procedure.getInstructions().size());
+			for (Inst inst : procedure.getInstructions()) {
+				writeInst(inst, refs, out);
+			}
+		}
+		
+		if (!cacheable) {
+			return null;
+		}
+		
+		SerialWriter header = new SerialWriter();
+		header.writeInt(IntermediateDeserializer.MAGIC);
+		header.writeInt(IntermediateDeserializer.VERSION);
+		header.writeUTF(obj.getChecksum());
+		
+		header.writeVarInt(dependencies.size());
+		for (String path : dependencies.keySet()) {
+			header.writeUTF(path);
+			header.writeUTF(sharedReferences.getOwner(path).getChecksum());
+		}
+		
+		header.writeVarInt(strings.size());
+		for (String string : strings.keySet()) {
+			header.writeUTF(string);
+		}
+		
+		header.writeVarInt(references.size());
+		refs.writeTo(header);
+		out.writeTo(header);
+		return header.toByteArray();
+	}
+	
+	/**
+	 * Write the index of a reference. The first time a reference is used its definition is written to {@code refs}
+	 */
+	private void writeReference(InstRef reference, SerialWriter refs, SerialWriter out) throws IOException {
+		if (reference == null) {
+			out.writeVarInt(0);
+			return;
+		}
+		
+		Integer index = references.get(reference);
+		if (index == null) {
+			index = references.size() + 1;
+			references.put(reference, index);
+			
+			SharedReferences.Declaration declaration = sharedReferences.getDeclaration(reference);
+			if (declaration != null) {
+				refs.writeByte(1);
+				refs.writeVarInt(dependencies.computeIfAbsent(declaration.path(), k -> dependencies.size()));
+				refs.writeVarInt(declaration.ordinal());
+			} else if (sharedReferences.contains(reference)) {
+				// A shared reference without a declaration can not be found again
+				cacheable = false;
+			} else {
+				refs.writeByte(0);
+				writeString(reference.getName(), refs);
+				writeString(reference.getMangledName(), refs);
+				writeString(reference.getNamespace().getPath(), refs);
+				writeValueType(reference.getValueType(), refs);
+				refs.writeVarInt(reference.getId() + 1);
+				refs.writeVarInt(reference.getFlags());
+			}
+		}
+		
+		out.writeVarInt(index);
+	}
+	
+	private void writeInst(Inst inst, SerialWriter refs, SerialWriter out) throws IOException {
+		out.writeByte(inst.getOpcode().ordinal());
+		writeSyntaxPosition(inst.getSyntaxPosition(), out);
+		
+		out.writeVarInt(inst.getParamCount());
+		for (InstParam param : inst.getParameters()) {
+			if (param instanceof InstParam.Ref ref) {
+				out.writeByte(0);
+				writeReference(ref.getReference(), refs, out);
+			} else if (param instanceof InstParam.Num num) {
+				out.writeByte(1);
+				writeValueType(num.getSize(), out);
+				out.writeLong(num.getValue());
+			} else if (param instanceof InstParam.Str str) {
+				out.writeByte(2);
+				writeString(str.getValue(), out);
+			} else {
+				throw new IOException("Unknown parameter type " + param.getClass());
+			}
+		}
+	}
+	
+	private void writeSyntaxPosition(ISyntaxPos syntaxPos, SerialWriter out) {
+		Position start = syntaxPos.getStartPosition();
+		Position end = syntaxPos.getEndPosition();
+		writeString(syntaxPos.getPath(), out);
+		out.writeVarInt(start.column());
+		out.writeVarInt(start.line());
+		out.writeVarInt(end.column());
+		out.writeVarInt(end.line());
+	}
+	
+	private void writeValueType(ValueType valueType, SerialWriter out) {
+		writeString(valueType.getName(), out);
+		out.writeVarInt(valueType.getSize());
+		out.writeVarInt(valueType.getDepth());
+		out.writeVarInt(valueType.getFlags());
+	}
+	
+	private void writeString(String string, SerialWriter out) {
+		out.writeVarInt(string == null ? 0 : strings.computeIfAbsent(string, k -> strings.size() + 1));
+	}
+}
@@ -22,6 +22,8 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -49,7 +51,6 @@ public class AmpleParser {
 	// Configurable fields
 	private LangReader reader;
 	private File currentFile;
-	private String fileContent;
 	private boolean repl;
 	
 	public AmpleParser(AmpleConfig ampleConfig) {
@@ -74,7 +75,13 @@ public class AmpleParser {
 	public LinkableObject fromFile(File file) throws ParseException, IOException {
 		//			LOGGER.error("Could not find the file '{}'", file.getAbsolutePath());
 		//			throw new ParseException("Failed to read file '%s'", file.getAbsolutePath());
-		return fromBytes(file.getAbsolutePath(), Files.readAllBytes(file.toPath()));
+		
+		// The file is read and decoded once and the tokens are read from the text on demand
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		String fileChecksum = AmpleCache.getDataChecksum(ByteBuffer.wrap(bytes), ampleConfig.getConfiguration().getChecksumType());
+		String text = new String(bytes, StandardCharsets.UTF_8);
+		ampleConfig.getFileSources().put(file, text);
+		return fromText(file.getAbsolutePath(), text, fileChecksum);
 	}
 	
 	public LinkableObject fromReplBytes(String path, byte[] bytes) throws ParseException {
@@ -87,10 +94,15 @@ public class AmpleParser {
 			throw createParseException("Tried to parse an array 'null'");
 		}
 		
+		String text = new String(bytes);
+		ampleConfig.getFileSources().put(new File(path), text);
+		return fromText(path, text, AmpleCache.getDataChecksum(ByteBuffer.wrap(bytes), ampleConfig.getConfiguration().getChecksumType()));
+	}
+	
+	private LinkableObject fromText(String path, CharSequence text, String fileChecksum) throws ParseException {
 		// Update the fields inside this class
 		currentFile = new File(path);
-		fileContent = new String(bytes);
-		reader = LangReader.wrap(currentFile, LexerTokenizer.parse(path, bytes));
+		reader = LangReader.wrap(currentFile, LexerTokenizer.stream(path, text, ampleConfig.getSymbolTable()));
 		
 		// Parse the current code
 		ProgStat program = parse();
@@ -112,11 +124,9 @@ public class AmpleParser {
 		LOGGER.debug("  imported = {}", importedReferences);
 		LOGGER.debug("  exported = {}", exportedReferences);
 		
-		AmpleCache.putFileSource(currentFile, new String(bytes));
-		String fileChecksum = AmpleCache.getDataChecksum(bytes);
 		LinkableObject linkableObject = new LinkableObject(currentFile, fileChecksum, program, importedFiles, exportedReferences, importedReferences);
 		
-		if (reader.remaining() != 0) {
+		if (reader.hasRemaining()) {
 			throw createParseException(reader.syntaxPosition(), "Failed to parse file fully");
 		}
 		
@@ -130,7 +140,7 @@ public class AmpleParser {
 		MutableSyntaxImpl mutableSyntax = new MutableSyntaxImpl(currentFile.getAbsolutePath(), reader.position(), null);
 		ProgStat list = new ProgStat(mutableSyntax);
 		
-		while (reader.remaining() > 0) {
+		while (reader.hasRemaining()) {
 			Stat stat = parseStatement(true);
 			
 			// Remove empty statements
@@ -198,7 +208,7 @@ public class AmpleParser {
 		MutableSyntaxImpl mutableSyntax = new MutableSyntaxImpl(currentFile.getAbsolutePath(), reader.position(), null);
 		ScopeStat stat = new ScopeStat(mutableSyntax);
 		
-		while (reader.remaining() > 0) {
+		while (reader.hasRemaining()) {
 			Stat element = statement();
 			
 			if (element instanceof VarStat var) {
@@ -685,7 +695,7 @@ public class AmpleParser {
 	
 	public Namespace readNamespace() throws ParseException {
 		List<String> namespaceParts = new ArrayList<>();
-		while (reader.peak(1).type == Token.Type.NAMESPACE_OPERATOR) {
+		while (reader.peakType(1) == Token.Type.NAMESPACE_OPERATOR) {
 			tryMatchOrError(Token.Type.IDENTIFIER);
 			namespaceParts.add(reader.value());
 			reader.advance();
@@ -723,7 +733,7 @@ public class AmpleParser {
 		} else {
 			Position position = syntaxPosition.getStartPosition();
 			sb.append("(line: ").append(position.line() + 1).append(", column: ").append(position.column() + 1).append("): ")
-				.append(ErrorUtil.createError(syntaxPosition, fileContent, msg));
+				.append(ErrorUtil.createError(syntaxPosition, reader == null ? null : reader.getText(), reader == null ? null : reader.getLineIndex(), msg));
 		}
 		
 		return new ParseException(sb.toString());
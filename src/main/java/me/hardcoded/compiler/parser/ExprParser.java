@@ -241,7 +241,7 @@ public class ExprParser {
 				}
 				
 				Namespace namespace = parser.readNamespace();
-				if (reader.peak(1).type == Token.Type.L_PAREN) {
+				if (reader.peakType(1) == Token.Type.L_PAREN) {
 					return callExpression(namespace);
 				}
 				
@@ -0,0 +1,67 @@
+package me.hardcoded.compiler.parser;
+
+import me.hardcoded.lexer.Token;
+import me.hardcoded.lexer.TokenScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class finds the files imported by a source file without parsing it.
+ * <p>
+ * Only the tokens of the file are read. A link statement is only allowed outside of
+ * all brackets so a {@code @link} token followed by a string at the top level will
+ * always be an import. The {@link AmpleParser} is still responsible for reporting
+ * malformed link statements.
+ *
+ * @author HardCoded
+ */
+public class ImportScanner {
+	private ImportScanner() {
+	}
+	
+	/**
+	 * Returns the paths imported by the file in the order they are declared.
+	 *
+	 * @param file the file to scan
+	 * @throws IOException if the file could not be read
+	 */
+	public static List<String> scan(File file) throws IOException {
+		String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		return scan(file.getAbsolutePath(), text);
+	}
+	
+	/**
+	 * Returns the paths imported by the text in the order they are declared.
+	 *
+	 * @param path the path of the text
+	 * @param text the text to scan
+	 * @throws RuntimeException if the text contained characters that could not be parsed
+	 */
+	public static List<String> scan(String path, CharSequence text) {
+		List<String> imports = new ArrayList<>();
+		TokenScanner scanner = new TokenScanner(path, text, false);
+		
+		int depth = 0;
+		boolean link = false;
+		while (scanner.next()) {
+			Token.Type type = scanner.getType();
+			
+			if (link && type == Token.Type.STRING) {
+				imports.add(text.subSequence(scanner.getStart() + 1, scanner.getEnd() - 1).toString());
+			}
+			
+			link = depth == 0 && type == Token.Type.LINK;
+			switch (type) {
+				case L_CURLY, L_PAREN, L_SQUARE -> depth++;
+				case R_CURLY, R_PAREN, R_SQUARE -> depth = Math.max(0, depth - 1);
+			}
+		}
+		
+		return imports;
+	}
+}
@@ -5,6 +5,7 @@ import me.hardcoded.compiler.parser.type.ReferenceSyntax;
 
 import java.io.File;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * This is a linkable object that is used in when creating the intermediate code for the arucas programming language.
@@ -19,7 +20,8 @@ public class LinkableObject {
 	// Internal fields
 	private final String checksum;
 	private final File file;
-	private final ProgStat program;
+	private volatile ProgStat program;
+	private Supplier<ProgStat> lazyProgram;
 	
 	public LinkableObject(File file, String checksum, ProgStat program, List<String> imports, List<ReferenceSyntax> exportedReferences, List<ReferenceSyntax> importedReferences) {
 		this.file = file;
@@ -30,6 +32,14 @@ public class LinkableObject {
 		this.imports = imports;
 	}
 	
+	/**
+	 * Create a linkable object where the program is created when it is first accessed
+	 */
+	public LinkableObject(File file, String checksum, Supplier<ProgStat> lazyProgram, List<String> imports, List<ReferenceSyntax> exportedReferences, List<ReferenceSyntax> importedReferences) {
+		this(file, checksum, (ProgStat) null, imports, exportedReferences, importedReferences);
+		this.lazyProgram = lazyProgram;
+	}
+	
 	public List<ReferenceSyntax> getImportedReferences() {
 		return importedReferences;
 	}
@@ -51,7 +61,17 @@ public class LinkableObject {
 	}
 	
 	public ProgStat getProgram() {
-		return program;
+		ProgStat program = this.program;
+		return program != null ? program : loadProgram();
 	}
 	
+	private synchronized ProgStat loadProgram() {
+		if (program == null && lazyProgram != null) {
+			program = lazyProgram.get();
+			lazyProgram = null;
+		}
+		
+		return program;
+	}
+
 }
@@ -8,40 +8,107 @@ import me.hardcoded.compiler.parser.type.Operation;
 import me.hardcoded.compiler.parser.type.Reference;
 import me.hardcoded.compiler.parser.type.ReferenceSyntax;
 import me.hardcoded.compiler.parser.type.ValueType;
+import me.hardcoded.utils.Position;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class LinkableDeserializer {
 	private static final Logger LOGGER = LogManager.getLogger(LinkableDeserializer.class);
 	private final LinkableHeader header;
+	private SerialReader reader;
+	private Position previousPosition;
 	
 	private LinkableDeserializer() {
-		this.header = new LinkableHeader();
+		this(new LinkableHeader(), null, LinkableHeader.START);
+	}
+	
+	private LinkableDeserializer(LinkableHeader header, SerialReader reader, Position previousPosition) {
+		this.header = header;
+		this.reader = reader;
+		this.previousPosition = previousPosition;
 	}
 	
 	public static LinkableObject deserializeLinkable(byte[] bytes) {
+		return deserializeLinkable(ByteBuffer.wrap(bytes));
+	}
+	
+	/**
+	 * Deserialize an object directly from a buffer. The buffer is not copied and must not be
+	 * modified while the program of the object can still be loaded
+	 *
+	 * @param buffer the serialized data
+	 */
+	public static LinkableObject deserializeLinkable(ByteBuffer buffer) {
+		return deserializeLinkable(buffer, null);
+	}
+	
+	/**
+	 * Deserialize an object that was serialized from a file with the same content at another path.
+	 * Syntax positions inside the file are moved to the new path
+	 *
+	 * @param buffer the serialized data
+	 * @param file   the file of the object or {@code null} to keep the serialized file
+	 */
+	public static LinkableObject deserializeLinkable(ByteBuffer buffer, File file) {
 		LinkableDeserializer deserializer = new LinkableDeserializer();
 		try {
-			return deserializer.deserializer(bytes);
-		} catch (IOException e) {
+			return deserializer.deserializer(new SerialReader(buffer), file);
+		} catch (IOException | BufferUnderflowException e) {
 			LOGGER.error(e);
 		}
 		
 		return null;
 	}
 	
-	private LinkableObject deserializer(byte[] bytes) throws IOException {
-		ByteArrayInputStream bi = new ByteArrayInputStream(bytes);
-		DataInputStream in = new DataInputStream(bi);
-		
+	/**
+	 * Returns the source checksum stored in serialized data without reading the rest of the data.
+	 * Returns {@code null} if the data was serialized by another version
+	 *
+	 * @param buffer the serialized data
+	 * @throws IOException if the header was malformed
+	 */
+	public static String readChecksum(ByteBuffer buffer) throws IOException {
+		try {
+			return LinkableHeader.readChecksum(new SerialReader(buffer));
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Header is truncated", e);
+		}
+	}
+	
+	/**
+	 * Returns the source checksum stored in a cache file without reading the whole file.
+	 * Returns {@code null} if the file was serialized by another version
+	 *
+	 * @param cacheFile the cache file
+	 * @throws IOException if the cache file could not be read
+	 */
+	public static String readChecksum(File cacheFile) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 512))) {
+			return LinkableHeader.readChecksum(in);
+		}
+	}
+	
+	/**
+	 * Read the header and the context of the object. The program and the bodies of functions are
+	 * only deserialized when they are first accessed
+	 */
+	private LinkableObject deserializer(SerialReader in, File relocatedFile) throws IOException {
+		this.reader = in;
 		header.readHeader(in);
+		if (relocatedFile != null) {
+			header.setFile(relocatedFile);
+		}
+		
 		File file = header.getFile();
 		String checksum = header.getChecksum();
 		
@@ -50,35 +117,51 @@ public class LinkableDeserializer {
 		List<ReferenceSyntax> importedReferences = new ArrayList<>();
 		readContext(imports, exportedReferences, importedReferences, in);
 		
-		ProgStat program = (ProgStat) readTree(in);
-		return new LinkableObject(file, checksum, program, imports, exportedReferences, importedReferences);
+		int programOffset = in.position();
+		return new LinkableObject(file, checksum, () -> (ProgStat) readTree(programOffset, LinkableHeader.START), imports, exportedReferences, importedReferences);
 	}
 	
-	private Stat readTree(DataInputStream in) throws IOException {
-		return deserializeStat(in);
+	/**
+	 * Read a tree with a new deserializer. Trees can be read from multiple threads and each tree
+	 * keeps track of its own previous syntax position
+	 */
+	private Stat readTree(int offset, Position position) {
+		SerialReader in = reader.at(offset);
+		LinkableDeserializer deserializer = new LinkableDeserializer(header, in, position);
+		try {
+			return deserializer.deserializeStat(in);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to deserialize tree", e);
+		}
 	}
 	
-	private void readContext(List<String> imports, List<ReferenceSyntax> exportedReferences, List<ReferenceSyntax> importedReferences, DataInputStream in) throws IOException {
-		for (int i = 0, size = header.readVarInt(in); i < size; i++) {
+	private void readContext(List<String> imports, List<ReferenceSyntax> exportedReferences, List<ReferenceSyntax> importedReferences, SerialReader in) throws IOException {
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
 			imports.add(header.deserializeString(in));
 		}
 		
-		for (int i = 0, size = header.readVarInt(in); i < size; i++) {
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
 			Reference reference = header.deserializeReference(in);
-			ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+			ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 			exportedReferences.add(new ReferenceSyntax(reference, syntaxPosition));
 		}
 		
-		for (int i = 0, size = header.readVarInt(in); i < size; i++) {
+		for (int i = 0, size = in.readVarInt(); i < size; i++) {
 			Reference reference = header.deserializeReference(in);
-			ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+			ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 			importedReferences.add(new ReferenceSyntax(reference, syntaxPosition));
 		}
 	}
 	
+	private ISyntaxPos deserializeISyntaxPosition(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(previousPosition, in);
+		previousPosition = syntaxPosition.getStartPosition();
+		return syntaxPosition;
+	}
+	
 	// Statements
-	private Stat deserializeStat(DataInputStream in) throws IOException {
-		TreeType type = TreeType.VALUES[header.readVarInt(in)];
+	private Stat deserializeStat(SerialReader in) throws IOException {
+		TreeType type = TreeType.VALUES[in.readVarInt()];
 		
 		return switch (type) {
 			/* Statements */
@@ -111,27 +194,27 @@ public class LinkableDeserializer {
 		};
 	}
 	
-	private Expr deserializeExpr(DataInputStream in) throws IOException {
+	private Expr deserializeExpr(SerialReader in) throws IOException {
 		return (Expr) deserializeStat(in);
 	}
 	
-	private BreakStat deserializeBreakStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private BreakStat deserializeBreakStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		return new BreakStat(syntaxPosition);
 	}
 	
-	private ContinueStat deserializeContinueStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private ContinueStat deserializeContinueStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		return new ContinueStat(syntaxPosition);
 	}
 	
-	private EmptyStat deserializeEmptyStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private EmptyStat deserializeEmptyStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		return new EmptyStat(syntaxPosition);
 	}
 	
-	private ForStat deserializeForStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private ForStat deserializeForStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Stat initializer = deserializeStat(in);
 		Expr condition = deserializeExpr(in);
 		Expr action = deserializeExpr(in);
@@ -139,48 +222,52 @@ public class LinkableDeserializer {
 		return new ForStat(syntaxPosition, initializer, condition, action, body);
 	}
 	
-	private FuncStat deserializeFuncStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private FuncStat deserializeFuncStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Reference reference = header.deserializeReference(in);
 		
 		List<Reference> parameters = new ArrayList<>();
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		for (int i = 0; i < size; i++) {
 			Reference paramReference = header.deserializeReference(in);
 			parameters.add(paramReference);
 		}
 		
-		Stat body = deserializeStat(in);
+		// The body is skipped until it is needed
+		int length = in.readInt();
+		int bodyOffset = in.position();
+		in.skip(length);
+		
 		FuncStat result = new FuncStat(syntaxPosition, parameters, reference);
-		result.setBody(body);
+		result.setLazyBody(() -> readTree(bodyOffset, syntaxPosition.getStartPosition()));
 		return result;
 	}
 	
-	//	private GotoStat deserializeGotoStat(DataInputStream in) throws IOException {
+	//	private GotoStat deserializeGotoStat(SerialReader in) throws IOException {
 	//		ISyntaxPosition syntaxPosition = deserializeISyntaxPosition(in);
 	//		Reference reference = deserializeReference(in);
 	//		return new GotoStat(reference, syntaxPosition);
 	//	}
 	
-	private IfStat deserializeIfStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private IfStat deserializeIfStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Expr condition = deserializeExpr(in);
 		Stat body = deserializeStat(in);
 		Stat elseBody = deserializeStat(in);
 		return new IfStat(syntaxPosition, condition, body, elseBody);
 	}
 	
-	//	private LabelStat deserializeLabelStat(DataInputStream in) throws IOException {
-	//		ISyntaxPosition syntaxPosition = header.deserializeISyntaxPosition(in);
+	//	private LabelStat deserializeLabelStat(SerialReader in) throws IOException {
+	//		ISyntaxPosition syntaxPosition = deserializeISyntaxPosition(in);
 	//		Reference reference = header.deserializeReference(in);
 	//		return new LabelStat(reference, syntaxPosition);
 	//	}
 	
-	private ProgStat deserializeProgStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private ProgStat deserializeProgStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		
 		ProgStat result = new ProgStat(syntaxPosition);
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		for (int i = 0; i < size; i++) {
 			result.addElement(deserializeStat(in));
 		}
@@ -188,17 +275,17 @@ public class LinkableDeserializer {
 		return result;
 	}
 	
-	private ReturnStat deserializeReturnStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private ReturnStat deserializeReturnStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Expr value = deserializeExpr(in);
 		return new ReturnStat(syntaxPosition, value);
 	}
 	
-	private ScopeStat deserializeScopeStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private ScopeStat deserializeScopeStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		
 		ScopeStat result = new ScopeStat(syntaxPosition);
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		for (int i = 0; i < size; i++) {
 			result.addElement(deserializeStat(in));
 		}
@@ -206,22 +293,22 @@ public class LinkableDeserializer {
 		return result;
 	}
 	
-	private VarStat deserializeVarStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private VarStat deserializeVarStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Reference reference = header.deserializeReference(in);
 		Expr value = deserializeExpr(in);
 		return new VarStat(syntaxPosition, reference, value);
 	}
 	
-	private CompilerStat deserializeCompilerStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private CompilerStat deserializeCompilerStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		String targetType = header.deserializeString(in);
 		List<CompilerStat.Part> parts = new ArrayList<>();
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		for (int i = 0; i < size; i++) {
-			ISyntaxPos partSyntaxPosition = header.deserializeISyntaxPosition(in);
+			ISyntaxPos partSyntaxPosition = deserializeISyntaxPosition(in);
 			String command = header.deserializeString(in);
-			int count = header.readVarInt(in);
+			int count = in.readVarInt();
 			List<Reference> references = new ArrayList<>();
 			for (int j = 0; j < count; j++) {
 				references.add(header.deserializeReference(in));
@@ -232,19 +319,19 @@ public class LinkableDeserializer {
 		return new CompilerStat(syntaxPosition, targetType, parts);
 	}
 	
-	private WhileStat deserializeWhileStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private WhileStat deserializeWhileStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Expr condition = deserializeExpr(in);
 		Stat body = deserializeStat(in);
 		return new WhileStat(syntaxPosition, condition, body);
 	}
 	
-	private NamespaceStat deserializeNamespaceStat(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private NamespaceStat deserializeNamespaceStat(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Reference reference = header.deserializeReference(in);
 		
 		NamespaceStat result = new NamespaceStat(syntaxPosition, reference);
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		for (int i = 0; i < size; i++) {
 			result.addElement(deserializeStat(in));
 		}
@@ -253,28 +340,28 @@ public class LinkableDeserializer {
 	}
 	
 	// Expressions
-	private StackAllocExpr deserializeStackAllocExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private StackAllocExpr deserializeStackAllocExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Expr value = deserializeExpr(in);
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		ValueType type = header.deserializeValueType(in);
 		return new StackAllocExpr(syntaxPosition, type, size, value);
 	}
 	
-	private BinaryExpr deserializeBinaryExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private BinaryExpr deserializeBinaryExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Expr left = deserializeExpr(in);
-		Operation operation = Operation.VALUES[header.readVarInt(in)];
+		Operation operation = Operation.VALUES[in.readVarInt()];
 		Expr right = deserializeExpr(in);
 		return new BinaryExpr(syntaxPosition, operation, left, right);
 	}
 	
-	private CallExpr deserializeCallExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private CallExpr deserializeCallExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Reference reference = header.deserializeReference(in);
 		
 		List<Expr> parameters = new ArrayList<>();
-		int size = header.readVarInt(in);
+		int size = in.readVarInt();
 		for (int i = 0; i < size; i++) {
 			parameters.add(deserializeExpr(in));
 		}
@@ -282,61 +369,61 @@ public class LinkableDeserializer {
 		return new CallExpr(syntaxPosition, reference, parameters);
 	}
 	
-	private CastExpr deserializeCastExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private CastExpr deserializeCastExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		ValueType type = header.deserializeValueType(in);
 		Expr value = deserializeExpr(in);
 		return new CastExpr(syntaxPosition, type, value);
 	}
 	
-	//	private CommaExpr deserializeCommaExpr(DataInputStream in) throws IOException {
+	//	private CommaExpr deserializeCommaExpr(SerialReader in) throws IOException {
 	//		ISyntaxPosition syntaxPosition = deserializeISyntaxPosition(in);
 	//		List<Expr> values = new ArrayList<>();
-	//		int size = readVarInt(in);
+	//		int size = in.readVarInt();
 	//		for (int i = 0; i < size; i++) {
 	//			values.add((Expr) deserializeStat(in));
 	//		}
 	//		return new CommaExpr(values, syntaxPosition);
 	//	}
 	
-	private NameExpr deserializeNameExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private NameExpr deserializeNameExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		Reference reference = header.deserializeReference(in);
 		return new NameExpr(syntaxPosition, reference);
 	}
 	
-	private NoneExpr deserializeNoneExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private NoneExpr deserializeNoneExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		return new NoneExpr(syntaxPosition);
 	}
 	
-	private NumExpr deserializeNumExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private NumExpr deserializeNumExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		ValueType type = header.deserializeValueType(in);
 		long value = in.readLong();
 		return new NumExpr(syntaxPosition, type, value);
 	}
 	
-	private StrExpr deserializeStrExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
+	private StrExpr deserializeStrExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
 		String string = header.deserializeString(in);
 		return new StrExpr(syntaxPosition, string);
 	}
 	
-	private UnaryExpr deserializeUnaryExpr(DataInputStream in) throws IOException {
-		ISyntaxPos syntaxPosition = header.deserializeISyntaxPosition(in);
-		Operation operation = Operation.VALUES[header.readVarInt(in)];
+	private UnaryExpr deserializeUnaryExpr(SerialReader in) throws IOException {
+		ISyntaxPos syntaxPosition = deserializeISyntaxPosition(in);
+		Operation operation = Operation.VALUES[in.readVarInt()];
 		Expr value = deserializeExpr(in);
 		return new UnaryExpr(syntaxPosition, operation, value);
 	}
 	
-	//	private ConditionalExpr deserializeConditionalExpr(DataInputStream in) throws IOException {
+	//	private ConditionalExpr deserializeConditionalExpr(SerialReader in) throws IOException {
 	//		ISyntaxPosition syntaxPosition = deserializeISyntaxPosition(in);
-	//		Operation operation = Operation.VALUES[readVarInt(in)];
+	//		Operation operation = Operation.VALUES[in.readVarInt()];
 	//
 	//		ConditionalExpr result = new ConditionalExpr(operation, syntaxPosition);
 	//
-	//		int size = readVarInt(in);
+	//		int size = in.readVarInt();
 	//		for (int i = 0; i < size; i++) {
 	//			result.addElement((Expr) deserializeStat(in));
 	//		}
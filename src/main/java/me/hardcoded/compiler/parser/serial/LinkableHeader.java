@@ -14,21 +14,28 @@ import java.util.Map;
 
 class LinkableHeader {
 	static final int MAGIC = 0x414d4C46; // 'AMLF' A Linkable File
+	static final int VERSION = 4;
+	
+	/**
+	 * The position that the first syntax position of each stream is relative to
+	 */
+	static final Position START = new Position(0, 0);
 	
 	protected final RefPos<String> stringMap;
 	protected final RefPos<ValueType> valueTypeMap;
 	protected final RefPos<Namespace> namespaceMap;
 	protected final RefPos<Reference> referenceMap;
-	protected final RefPos<ISyntaxPos> syntaxPositionMap;
 	protected File file;
+	protected String path;
 	protected String checksum;
+	private int dataChecksumOffset;
+	private int tablesOffset;
 	
 	public LinkableHeader() {
 		this.stringMap = new RefPos<>();
 		this.valueTypeMap = new RefPos<>();
 		this.namespaceMap = new RefPos<>();
 		this.referenceMap = new RefPos<>();
-		this.syntaxPositionMap = new RefPos<>();
 	}
 	
 	public void clear() {
@@ -36,11 +43,11 @@ class LinkableHeader {
 		valueTypeMap.clear();
 		namespaceMap.clear();
 		referenceMap.clear();
-		syntaxPositionMap.clear();
 	}
 	
 	public void setFile(File file) {
 		this.file = file;
+		this.path = file.getAbsolutePath();
 	}
 	
 	public void setChecksum(String checksum) {
@@ -55,223 +62,217 @@ class LinkableHeader {
 		return checksum;
 	}
 	
-	public void readHeader(DataInputStream in) throws IOException {
+	/**
+	 * Read the checksum of a header without reading the rest of the header.
+	 * Returns {@code null} if the header was written by another version
+	 */
+	static String readChecksum(DataInputStream in) throws IOException {
 		int magic = in.readInt();
 		if (magic != MAGIC) {
 			throw new IOException("Wrong magic value");
 		}
 		
-		file = new File(readString(in));
-		checksum = readString(in);
+		if (in.readInt() != VERSION) {
+			return null;
+		}
 		
-		clear();
+		// Skip the file path
+		in.readUTF();
+		return in.readUTF();
+	}
+	
+	/**
+	 * Read the checksum of a header from a buffer without reading the rest of the header.
+	 * Returns {@code null} if the header was written by another version
+	 */
+	static String readChecksum(SerialReader in) throws IOException {
+		int magic = in.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Wrong magic value");
+		}
 		
-		for (int i = 0, size = readVarInt(in); i < size; i++) {
-			String string = readString(in);
-			stringMap.put(string);
+		if (in.readInt() != VERSION) {
+			return null;
 		}
 		
-		for (int i = 0, size = readVarInt(in); i < size; i++) {
-			ValueType valueType = readValueType(in);
-			valueTypeMap.put(valueType);
+		// Skip the file path
+		in.readUTF();
+		return in.readUTF();
+	}
+	
+	/**
+	 * Read the header. The tables are read from the end of the data and the reader is left at
+	 * the first byte after the header
+	 */
+	public void readHeader(SerialReader in) throws IOException {
+		int magic = in.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Wrong magic value");
 		}
 		
-		for (int i = 0, size = readVarInt(in); i < size; i++) {
-			Namespace valueType = readNamespace(in);
-			namespaceMap.put(valueType);
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version);
 		}
 		
-		for (int i = 0, size = readVarInt(in); i < size; i++) {
-			Reference reference = readReference(in);
-			referenceMap.put(reference);
+		path = in.readUTF();
+		file = new File(path);
+		checksum = in.readUTF();
+		
+		// Data that was not fully written or was modified is not read
+		int dataLength = in.readInt();
+		int dataChecksum = in.readInt();
+		int dataOffset = in.position();
+		if (in.length() - dataOffset != dataLength) {
+			throw new IOException("Data is truncated");
 		}
 		
-		for (int i = 0, size = readVarInt(in); i < size; i++) {
-			ISyntaxPos syntaxPosition = readISyntaxPosition(in);
-			syntaxPositionMap.put(syntaxPosition);
+		if (in.checksum(dataOffset) != dataChecksum) {
+			throw new IOException("Data is corrupted");
 		}
-	}
-	
-	public void writeHeader(DataOutputStream out) throws IOException {
-		out.writeInt(MAGIC);
-		out.writeUTF(file.getAbsolutePath());
-		out.writeUTF(checksum);
 		
-		byte[] refsBytes = writeRefs();
-		byte[] strsBytes = writeStrings();
+		int stringsOffset = in.readInt();
+		int valueTypesOffset = in.readInt();
+		int namespacesOffset = in.readInt();
+		int referencesOffset = in.readInt();
 		
-		out.write(strsBytes);
-		out.write(refsBytes);
-	}
-	
-	private void processRefs() throws IOException {
-		DataOutputStream dummy = new DataOutputStream(OutputStream.nullOutputStream());
+		clear();
 		
-		for (Namespace namespace : namespaceMap.list) {
-			writeNamespace(namespace, dummy);
+		// Each table only uses the tables that were read before it
+		SerialReader strings = in.at(stringsOffset);
+		for (int i = 0, size = strings.readVarInt(); i < size; i++) {
+			stringMap.put(strings.readUTF());
 		}
 		
-		for (Reference reference : referenceMap.list) {
-			writeReference(reference, dummy);
+		SerialReader valueTypes = in.at(valueTypesOffset);
+		for (int i = 0, size = valueTypes.readVarInt(); i < size; i++) {
+			valueTypeMap.put(readValueType(valueTypes));
 		}
-	}
-	
-	private byte[] writeRefs() throws IOException {
-		ByteArrayOutputStream bs = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(bs);
 		
-		// Initialize all value types
-		processRefs();
-		
-		writeVarInt(valueTypeMap.list.size(), out);
-		for (ValueType valueType : valueTypeMap.list) {
-			writeValueType(valueType, out);
+		SerialReader namespaces = in.at(namespacesOffset);
+		for (int i = 0, size = namespaces.readVarInt(); i < size; i++) {
+			namespaceMap.put(readNamespace(namespaces));
 		}
 		
-		writeVarInt(namespaceMap.list.size(), out);
-		for (Namespace namespace : namespaceMap.list) {
-			writeNamespace(namespace, out);
+		SerialReader references = in.at(referencesOffset);
+		for (int i = 0, size = references.readVarInt(); i < size; i++) {
+			referenceMap.put(readReference(references));
 		}
+	}
+	
+	/**
+	 * Write the start of the header. The offsets of the tables are written by {@link #writeTables(SerialWriter)}
+	 * and the length and checksum of the data by {@link #writeDataChecksum(SerialWriter)}
+	 */
+	public void writeHeader(SerialWriter out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(path);
+		out.writeUTF(checksum);
+		
+		dataChecksumOffset = out.size();
+		out.writeInt(0);
+		out.writeInt(0);
 		
-		writeVarInt(referenceMap.list.size(), out);
+		tablesOffset = out.size();
+		for (int i = 0; i < 4; i++) {
+			out.writeInt(0);
+		}
+	}
+	
+	/**
+	 * Write the tables after all other data has been written. Writing a table can only add
+	 * elements to the tables that are written after it
+	 */
+	public void writeTables(SerialWriter out) throws IOException {
+		out.setInt(tablesOffset + 12, out.size());
+		out.writeVarInt(referenceMap.list.size());
 		for (Reference reference : referenceMap.list) {
 			writeReference(reference, out);
 		}
 		
-		writeVarInt(syntaxPositionMap.list.size(), out);
-		for (ISyntaxPos syntaxPosition : syntaxPositionMap.list) {
-			writeISyntaxPosition(syntaxPosition, out);
+		out.setInt(tablesOffset + 8, out.size());
+		out.writeVarInt(namespaceMap.list.size());
+		for (Namespace namespace : namespaceMap.list) {
+			writeNamespace(namespace, out);
 		}
 		
-		return bs.toByteArray();
-	}
-	
-	private byte[] writeStrings() throws IOException {
-		ByteArrayOutputStream bs = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(bs);
+		out.setInt(tablesOffset + 4, out.size());
+		out.writeVarInt(valueTypeMap.list.size());
+		for (ValueType valueType : valueTypeMap.list) {
+			writeValueType(valueType, out);
+		}
 		
-		writeVarInt(stringMap.list.size(), out);
+		out.setInt(tablesOffset, out.size());
+		out.writeVarInt(stringMap.list.size());
 		for (String str : stringMap.list) {
 			out.writeUTF(str);
 		}
-		
-		return bs.toByteArray();
-	}
-	
-	// Specific types
-	public int readVarInt(DataInputStream in) throws IOException {
-		int numRead = 0;
-		int result = 0;
-		int read;
-		
-		do {
-			read = in.read();
-			int value = (read & 0b01111111);
-			result |= (value << (7 * numRead));
-			
-			numRead++;
-			if (numRead > 5) {
-				throw new RuntimeException("VarInt is too big");
-			}
-		} while ((read & 0b10000000) != 0);
-		
-		return result;
 	}
 	
-	public void writeVarInt(int value, DataOutputStream out) throws IOException {
-		do {
-			int temp = (value & 0b01111111);
-			value >>>= 7;
-			if (value != 0) {
-				temp |= 0b10000000;
-			}
-			
-			out.write(temp);
-		} while (value != 0);
+	/**
+	 * Write the length and checksum of the data after the header checksum. This must be called last
+	 */
+	public void writeDataChecksum(SerialWriter out) {
+		int dataOffset = dataChecksumOffset + 8;
+		out.setInt(dataChecksumOffset, out.size() - dataOffset);
+		out.setInt(dataChecksumOffset + 4, out.checksum(dataOffset));
 	}
 	
 	
 	// Type readers
-	private String readString(DataInputStream in) throws IOException {
-		return in.readUTF();
-	}
-	
-	private ValueType readValueType(DataInputStream in) throws IOException {
+	private ValueType readValueType(SerialReader in) throws IOException {
 		String name = deserializeString(in);
-		int flags = readVarInt(in);
-		int depth = readVarInt(in);
-		int size = readVarInt(in);
+		int flags = in.readVarInt();
+		int depth = in.readVarInt();
+		int size = in.readVarInt();
 		return new ValueType(name, size, depth, flags);
 	}
 	
-	private Namespace readNamespace(DataInputStream in) throws IOException {
+	private Namespace readNamespace(SerialReader in) throws IOException {
 		String name = deserializeString(in);
 		return new Namespace(name);
 	}
 	
-	private Reference readReference(DataInputStream in) throws IOException {
+	private Reference readReference(SerialReader in) throws IOException {
 		String name = deserializeString(in);
 		String mangledName = deserializeString(in);
 		Namespace namespace = deserializeNamespace(in);
 		ValueType valueType = deserializeValueType(in);
-		int id = readVarInt(in);
-		int flags = readVarInt(in);
+		int id = in.readVarInt();
+		int flags = in.readVarInt();
 		
 		Reference reference = new Reference(name, namespace, valueType, id, flags);
 		reference.setMangledName(mangledName);
 		return reference;
 	}
 	
-	private ISyntaxPos readISyntaxPosition(DataInputStream in) throws IOException {
-		String name = deserializeString(in);
-		Position start = readPosition(in);
-		Position end = readPosition(in);
-		return ISyntaxPos.of(name, start, end);
-	}
-	
-	private Position readPosition(DataInputStream in) throws IOException {
-		int column = readVarInt(in);
-		int line = readVarInt(in);
-		return new Position(column, line);
-	}
-	
 	
 	// Type writers
-	private void writeValueType(ValueType valueType, DataOutputStream out) throws IOException {
+	private void writeValueType(ValueType valueType, SerialWriter out) throws IOException {
 		serializeString(valueType.getName(), out);
-		writeVarInt(valueType.getFlags(), out);
-		writeVarInt(valueType.getDepth(), out);
-		writeVarInt(valueType.getSize(), out);
+		out.writeVarInt(valueType.getFlags());
+		out.writeVarInt(valueType.getDepth());
+		out.writeVarInt(valueType.getSize());
 	}
 	
-	private void writeNamespace(Namespace namespace, DataOutputStream out) throws IOException {
+	private void writeNamespace(Namespace namespace, SerialWriter out) throws IOException {
 		serializeString(namespace.getPath(), out);
 	}
 	
-	private void writeReference(Reference reference, DataOutputStream out) throws IOException {
+	private void writeReference(Reference reference, SerialWriter out) throws IOException {
 		serializeString(reference.getName(), out);
 		serializeString(reference.getMangledName(), out);
 		serializeNamespace(reference.getNamespace(), out);
 		serializeValueType(reference.getValueType(), out);
-		writeVarInt(reference.getId(), out);
-		writeVarInt(reference.getFlags(), out);
-	}
-	
-	private void writeISyntaxPosition(ISyntaxPos syntaxPos, DataOutputStream out) throws IOException {
-		serializeString(syntaxPos.getPath(), out);
-		writePosition(syntaxPos.getStartPosition(), out);
-		writePosition(syntaxPos.getEndPosition(), out);
-	}
-	
-	private void writePosition(Position position, DataOutputStream out) throws IOException {
-		writeVarInt(position.column(), out);
-		writeVarInt(position.line(), out);
+		out.writeVarInt(reference.getId());
+		out.writeVarInt(reference.getFlags());
 	}
 	
 	
 	// Type deserializers
-	public String deserializeString(DataInputStream in) throws IOException {
-		int idx = readVarInt(in);
+	public String deserializeString(SerialReader in) throws IOException {
+		int idx = in.readVarInt();
 		if (idx == 0) {
 			return null;
 		} else {
@@ -279,55 +280,99 @@ class LinkableHeader {
 		}
 	}
 	
-	public ValueType deserializeValueType(DataInputStream in) throws IOException {
-		int idx = readVarInt(in);
+	public ValueType deserializeValueType(SerialReader in) throws IOException {
+		int idx = in.readVarInt();
 		return valueTypeMap.get(idx);
 	}
 	
-	public Namespace deserializeNamespace(DataInputStream in) throws IOException {
-		int idx = readVarInt(in);
+	public Namespace deserializeNamespace(SerialReader in) throws IOException {
+		int idx = in.readVarInt();
 		return namespaceMap.get(idx);
 	}
 	
-	public Reference deserializeReference(DataInputStream in) throws IOException {
-		int idx = readVarInt(in);
+	public Reference deserializeReference(SerialReader in) throws IOException {
+		int idx = in.readVarInt();
 		return referenceMap.get(idx);
 	}
 	
-	public ISyntaxPos deserializeISyntaxPosition(DataInputStream in) throws IOException {
-		int idx = readVarInt(in);
-		return syntaxPositionMap.get(idx);
+	/**
+	 * Read a syntax position written by {@link #serializeISyntaxPosition(ISyntaxPos, Position, SerialWriter)}
+	 *
+	 * @param previous the start of the previous syntax position in the stream
+	 */
+	public ISyntaxPos deserializeISyntaxPosition(Position previous, SerialReader in) throws IOException {
+		int flags = in.readVarInt();
+		String syntaxPath = (flags & 1) == 0 ? path : deserializeString(in);
+		
+		int startLineDelta = decodeZigZag(flags >>> 1);
+		int startLine = previous.line() + startLineDelta;
+		int startColumn = startLineDelta == 0 ? previous.column() + decodeZigZag(in.readVarInt()) : in.readVarInt();
+		
+		int endLineDelta = decodeZigZag(in.readVarInt());
+		int endLine = startLine + endLineDelta;
+		int endColumn = endLineDelta == 0 ? startColumn + decodeZigZag(in.readVarInt()) : in.readVarInt();
+		
+		return ISyntaxPos.of(syntaxPath, new Position(startColumn, startLine), new Position(endColumn, endLine));
 	}
 	
 	
 	// Type serializers
-	public void serializeString(String string, DataOutputStream out) throws IOException {
+	public void serializeString(String string, SerialWriter out) throws IOException {
 		if (string == null) {
-			writeVarInt(0, out);
+			out.writeVarInt(0);
 		} else {
 			int idx = stringMap.put(string);
-			writeVarInt(idx + 1, out);
+			out.writeVarInt(idx + 1);
 		}
 	}
 	
-	public void serializeValueType(ValueType valueType, DataOutputStream out) throws IOException {
+	public void serializeValueType(ValueType valueType, SerialWriter out) throws IOException {
 		int idx = valueTypeMap.put(valueType);
-		writeVarInt(idx, out);
+		out.writeVarInt(idx);
 	}
 	
-	public void serializeNamespace(Namespace namespace, DataOutputStream out) throws IOException {
+	public void serializeNamespace(Namespace namespace, SerialWriter out) throws IOException {
 		int idx = namespaceMap.put(namespace);
-		writeVarInt(idx, out);
+		out.writeVarInt(idx);
 	}
 	
-	public void serializeReference(Reference reference, DataOutputStream out) throws IOException {
+	public void serializeReference(Reference reference, SerialWriter out) throws IOException {
 		int idx = referenceMap.put(reference);
-		writeVarInt(idx, out);
+		out.writeVarInt(idx);
+	}
+	
+	/**
+	 * Write a syntax position relative to the previous syntax position in the stream. The line of
+	 * the start is written as a delta and the column is only written as a delta if the line did
+	 * not change. The end is written the same way relative to the start. The path is only written
+	 * if it is not the path of the file.
+	 *
+	 * @param previous the start of the previous syntax position in the stream
+	 */
+	public void serializeISyntaxPosition(ISyntaxPos syntaxPosition, Position previous, SerialWriter out) throws IOException {
+		Position start = syntaxPosition.getStartPosition();
+		Position end = syntaxPosition.getEndPosition();
+		boolean otherPath = !path.equals(syntaxPosition.getPath());
+		
+		int startLineDelta = start.line() - previous.line();
+		out.writeVarInt((encodeZigZag(startLineDelta) << 1) | (otherPath ? 1 : 0));
+		if (otherPath) {
+			serializeString(syntaxPosition.getPath(), out);
+		}
+		
+		out.writeVarInt(startLineDelta == 0 ? encodeZigZag(start.column() - previous.column()) : start.column());
+		
+		int endLineDelta = end.line() - start.line();
+		out.writeVarInt(encodeZigZag(endLineDelta));
+		out.writeVarInt(endLineDelta == 0 ? encodeZigZag(end.column() - start.column()) : end.column());
+	}
+	
+	private static int encodeZigZag(int value) {
+		return (value << 1) ^ (value >> 31);
 	}
 	
-	public void serializeISyntaxPosition(ISyntaxPos syntaxPosition, DataOutputStream out) throws IOException {
-		int idx = syntaxPositionMap.put(syntaxPosition);
-		writeVarInt(idx, out);
+	private static int decodeZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
 	}
 	
 	
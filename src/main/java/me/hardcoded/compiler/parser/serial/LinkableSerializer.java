@@ -6,19 +6,26 @@ import me.hardcoded.compiler.parser.expr.*;
 import me.hardcoded.compiler.parser.stat.*;
 import me.hardcoded.compiler.parser.type.Reference;
 import me.hardcoded.compiler.parser.type.ReferenceSyntax;
+import me.hardcoded.utils.Position;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.List;
 
 public class LinkableSerializer {
 	private final LinkableHeader header;
+	private Position previousPosition;
 	
 	private LinkableSerializer() {
 		this.header = new LinkableHeader();
 	}
 	
+	/**
+	 * Returns the version of the serialized format
+	 */
+	public static int getFormatVersion() {
+		return LinkableHeader.VERSION;
+	}
+	
 	public static byte[] serializeLinkable(LinkableObject obj) {
 		LinkableSerializer serializer = new LinkableSerializer();
 		
@@ -29,65 +36,63 @@ public class LinkableSerializer {
 		}
 	}
 	
+	/**
+	 * Write the object in a single pass. The tables of the header are written last
+	 */
 	private byte[] serialize(LinkableObject obj) throws IOException {
-		ByteArrayOutputStream full = new ByteArrayOutputStream();
-		
-		byte[] treeBytes = writeTree(obj);
-		byte[] contextBytes = writeContext(obj);
-		
-		{
-			// Write file
-			DataOutputStream out = new DataOutputStream(full);
-			header.setFile(obj.getFile());
-			header.setChecksum(obj.getChecksum());
-			header.writeHeader(out);
-		}
+		SerialWriter out = new SerialWriter();
+		header.setFile(obj.getFile());
+		header.setChecksum(obj.getChecksum());
+		header.writeHeader(out);
 		
-		full.writeBytes(contextBytes);
-		full.writeBytes(treeBytes);
+		writeContext(obj, out);
+		writeTree(obj, out);
+		header.writeTables(out);
+		header.writeDataChecksum(out);
 		
 		header.clear();
-		return full.toByteArray();
+		return out.toByteArray();
 	}
 	
-	private byte[] writeTree(LinkableObject obj) throws IOException {
-		ByteArrayOutputStream bs = new ByteArrayOutputStream();
-		serializeStat(obj.getProgram(), new DataOutputStream(bs));
-		return bs.toByteArray();
+	private void writeTree(LinkableObject obj, SerialWriter out) throws IOException {
+		previousPosition = LinkableHeader.START;
+		serializeStat(obj.getProgram(), out);
 	}
 	
-	private byte[] writeContext(LinkableObject obj) throws IOException {
-		ByteArrayOutputStream bs = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(bs);
+	private void writeContext(LinkableObject obj, SerialWriter out) throws IOException {
+		previousPosition = LinkableHeader.START;
 		
-		header.writeVarInt(obj.getImports().size(), out);
+		out.writeVarInt(obj.getImports().size());
 		for (String str : obj.getImports()) {
 			header.serializeString(str, out);
 		}
 		
-		header.writeVarInt(obj.getExportedReferences().size(), out);
+		out.writeVarInt(obj.getExportedReferences().size());
 		for (ReferenceSyntax referenceSyntax : obj.getExportedReferences()) {
 			header.serializeReference(referenceSyntax.getReference(), out);
-			header.serializeISyntaxPosition(referenceSyntax.getSyntaxPosition(), out);
+			serializeISyntaxPosition(referenceSyntax.getSyntaxPosition(), out);
 		}
 		
-		header.writeVarInt(obj.getImportedReferences().size(), out);
+		out.writeVarInt(obj.getImportedReferences().size());
 		for (ReferenceSyntax referenceSyntax : obj.getImportedReferences()) {
 			header.serializeReference(referenceSyntax.getReference(), out);
-			header.serializeISyntaxPosition(referenceSyntax.getSyntaxPosition(), out);
+			serializeISyntaxPosition(referenceSyntax.getSyntaxPosition(), out);
 		}
-		
-		return bs.toByteArray();
+	}
+	
+	private void serializeISyntaxPosition(ISyntaxPos syntaxPosition, SerialWriter out) throws IOException {
+		header.serializeISyntaxPosition(syntaxPosition, previousPosition, out);
+		previousPosition = syntaxPosition.getStartPosition();
 	}
 	
 	// Statements
-	private void serializeStat(Stat stat, DataOutputStream out) throws IOException {
+	private void serializeStat(Stat stat, SerialWriter out) throws IOException {
 		TreeType type = stat.getTreeType();
 		ISyntaxPos syntaxPosition = stat.getSyntaxPosition();
 		
 		// Write statement header (TYPE, SYNTAX_POSITION)
-		header.writeVarInt(type.ordinal(), out);
-		header.serializeISyntaxPosition(syntaxPosition, out);
+		out.writeVarInt(type.ordinal());
+		serializeISyntaxPosition(syntaxPosition, out);
 		
 		switch (type) {
 			/* Statements */
@@ -120,157 +125,166 @@ public class LinkableSerializer {
 		}
 	}
 	
-	private void serializeBreakStat(BreakStat stat, DataOutputStream out) throws IOException {
+	private void serializeBreakStat(BreakStat stat, SerialWriter out) throws IOException {
 	
 	}
 	
-	private void serializeContinueStat(ContinueStat stat, DataOutputStream out) throws IOException {
+	private void serializeContinueStat(ContinueStat stat, SerialWriter out) throws IOException {
 	
 	}
 	
-	private void serializeEmptyStat(EmptyStat stat, DataOutputStream out) throws IOException {
+	private void serializeEmptyStat(EmptyStat stat, SerialWriter out) throws IOException {
 	
 	}
 	
-	private void serializeForStat(ForStat stat, DataOutputStream out) throws IOException {
+	private void serializeForStat(ForStat stat, SerialWriter out) throws IOException {
 		serializeStat(stat.getInitializer(), out);
 		serializeStat(stat.getCondition(), out);
 		serializeStat(stat.getAction(), out);
 		serializeStat(stat.getBody(), out);
 	}
 	
-	private void serializeFuncStat(FuncStat stat, DataOutputStream out) throws IOException {
+	private void serializeFuncStat(FuncStat stat, SerialWriter out) throws IOException {
 		header.serializeReference(stat.getReference(), out);
 		List<Reference> parameters = stat.getParameters();
-		header.writeVarInt(parameters.size(), out);
+		out.writeVarInt(parameters.size());
 		for (Reference param : parameters) {
 			header.serializeReference(param, out);
 		}
+		
+		// The body is prefixed with its length so it can be skipped and the positions of the
+		// body are relative to the function so the body can be read on its own
+		Position position = previousPosition;
+		previousPosition = stat.getSyntaxPosition().getStartPosition();
+		int lengthOffset = out.size();
+		out.writeInt(0);
 		serializeStat(stat.getBody(), out);
+		out.setInt(lengthOffset, out.size() - lengthOffset - 4);
+		previousPosition = position;
 	}
 	
-	private void serializeIfStat(IfStat stat, DataOutputStream out) throws IOException {
+	private void serializeIfStat(IfStat stat, SerialWriter out) throws IOException {
 		serializeStat(stat.getValue(), out);
 		serializeStat(stat.getBody(), out);
 		serializeStat(stat.getElseBody(), out);
 	}
 	
-	private void serializeProgStat(ProgStat stat, DataOutputStream out) throws IOException {
+	private void serializeProgStat(ProgStat stat, SerialWriter out) throws IOException {
 		List<Stat> elements = stat.getElements();
-		header.writeVarInt(elements.size(), out);
+		out.writeVarInt(elements.size());
 		for (Stat s : elements) {
 			serializeStat(s, out);
 		}
 	}
 	
-	private void serializeReturnStat(ReturnStat stat, DataOutputStream out) throws IOException {
+	private void serializeReturnStat(ReturnStat stat, SerialWriter out) throws IOException {
 		serializeStat(stat.getValue(), out);
 	}
 	
-	private void serializeScopeStat(ScopeStat stat, DataOutputStream out) throws IOException {
+	private void serializeScopeStat(ScopeStat stat, SerialWriter out) throws IOException {
 		List<Stat> elements = stat.getElements();
-		header.writeVarInt(elements.size(), out);
+		out.writeVarInt(elements.size());
 		for (Stat s : elements) {
 			serializeStat(s, out);
 		}
 	}
 	
-	private void serializeVarStat(VarStat stat, DataOutputStream out) throws IOException {
+	private void serializeVarStat(VarStat stat, SerialWriter out) throws IOException {
 		header.serializeReference(stat.getReference(), out);
 		serializeStat(stat.getValue(), out);
 	}
 	
-	private void serializeCompilerStat(CompilerStat stat, DataOutputStream out) throws IOException {
+	private void serializeCompilerStat(CompilerStat stat, SerialWriter out) throws IOException {
 		header.serializeString(stat.getTargetType(), out);
 		List<CompilerStat.Part> parts = stat.getParts();
-		header.writeVarInt(parts.size(), out);
+		out.writeVarInt(parts.size());
 		for (CompilerStat.Part part : parts) {
-			header.serializeISyntaxPosition(part.syntaxPosition(), out);
+			serializeISyntaxPosition(part.syntaxPosition(), out);
 			header.serializeString(part.command(), out);
 			List<Reference> references = part.references();
-			header.writeVarInt(references.size(), out);
+			out.writeVarInt(references.size());
 			for (Reference reference : references) {
 				header.serializeReference(reference, out);
 			}
 		}
 	}
 	
-	private void serializeWhileStat(WhileStat stat, DataOutputStream out) throws IOException {
+	private void serializeWhileStat(WhileStat stat, SerialWriter out) throws IOException {
 		serializeStat(stat.getCondition(), out);
 		serializeStat(stat.getBody(), out);
 	}
 	
-	private void serializeNamespaceStat(NamespaceStat stat, DataOutputStream out) throws IOException {
+	private void serializeNamespaceStat(NamespaceStat stat, SerialWriter out) throws IOException {
 		header.serializeReference(stat.getReference(), out);
 		
 		List<Stat> elements = stat.getElements();
-		header.writeVarInt(elements.size(), out);
+		out.writeVarInt(elements.size());
 		for (Stat s : elements) {
 			serializeStat(s, out);
 		}
 	}
 	
 	// Expressions
-	private void serializeStackAllocExpr(StackAllocExpr expr, DataOutputStream out) throws IOException {
+	private void serializeStackAllocExpr(StackAllocExpr expr, SerialWriter out) throws IOException {
 		serializeStat(expr.getValue(), out);
-		header.writeVarInt(expr.getSize(), out);
+		out.writeVarInt(expr.getSize());
 		header.serializeValueType(expr.getType(), out);
 	}
 	
-	private void serializeBinaryExpr(BinaryExpr expr, DataOutputStream out) throws IOException {
+	private void serializeBinaryExpr(BinaryExpr expr, SerialWriter out) throws IOException {
 		serializeStat(expr.getLeft(), out);
-		header.writeVarInt(expr.getOperation().ordinal(), out);
+		out.writeVarInt(expr.getOperation().ordinal());
 		serializeStat(expr.getRight(), out);
 	}
 	
-	private void serializeCallExpr(CallExpr expr, DataOutputStream out) throws IOException {
+	private void serializeCallExpr(CallExpr expr, SerialWriter out) throws IOException {
 		header.serializeReference(expr.getReference(), out);
 		List<Expr> parameters = expr.getParameters();
-		header.writeVarInt(parameters.size(), out);
+		out.writeVarInt(parameters.size());
 		for (Expr e : parameters) {
 			serializeStat(e, out);
 		}
 	}
 	
-	private void serializeCastExpr(CastExpr expr, DataOutputStream out) throws IOException {
+	private void serializeCastExpr(CastExpr expr, SerialWriter out) throws IOException {
 		header.serializeValueType(expr.getType(), out);
 		serializeStat(expr.getValue(), out);
 	}
 	
-	//	private void serializeCommaExpr(CommaExpr expr, DataOutputStream out) throws IOException {
+	//	private void serializeCommaExpr(CommaExpr expr, SerialWriter out) throws IOException {
 	//		List<Expr> values = expr.getValues();
-	//		writeVarInt(values.size(), out);
+	//		out.writeVarInt(values.size());
 	//		for (Expr e : values) {
 	//			serializeStat(e, out);
 	//		}
 	//	}
 	
-	private void serializeNameExpr(NameExpr expr, DataOutputStream out) throws IOException {
+	private void serializeNameExpr(NameExpr expr, SerialWriter out) throws IOException {
 		header.serializeReference(expr.getReference(), out);
 	}
 	
-	private void serializeNoneExpr(NoneExpr expr, DataOutputStream out) throws IOException {
+	private void serializeNoneExpr(NoneExpr expr, SerialWriter out) throws IOException {
 	
 	}
 	
-	private void serializeNumExpr(NumExpr expr, DataOutputStream out) throws IOException {
+	private void serializeNumExpr(NumExpr expr, SerialWriter out) throws IOException {
 		header.serializeValueType(expr.getType(), out);
 		out.writeLong(expr.getValue());
 	}
 	
-	private void serializeStrExpr(StrExpr expr, DataOutputStream out) throws IOException {
+	private void serializeStrExpr(StrExpr expr, SerialWriter out) throws IOException {
 		header.serializeString(expr.getValue(), out);
 	}
 	
-	private void serializeUnaryExpr(UnaryExpr expr, DataOutputStream out) throws IOException {
-		header.writeVarInt(expr.getOperation().ordinal(), out);
+	private void serializeUnaryExpr(UnaryExpr expr, SerialWriter out) throws IOException {
+		out.writeVarInt(expr.getOperation().ordinal());
 		serializeStat(expr.getValue(), out);
 	}
 	
-	//	private void serializeConditionalExpr(ConditionalExpr expr, DataOutputStream out) throws IOException {
-	//		writeVarInt(expr.getOperation().ordinal(), out);
+	//	private void serializeConditionalExpr(ConditionalExpr expr, SerialWriter out) throws IOException {
+	//		out.writeVarInt(expr.getOperation().ordinal());
 	//		List<Expr> values = expr.getValues();
-	//		writeVarInt(values.size(), out);
+	//		out.writeVarInt(values.size());
 	//		for (Expr e : values) {
 	//			serializeStat(e, out);
 	//		}
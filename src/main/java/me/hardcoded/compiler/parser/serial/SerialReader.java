@@ -0,0 +1,145 @@
+package me.hardcoded.compiler.parser.serial;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads the values written by {@link SerialWriter} directly from a buffer.
+ *
+ * <p>The buffer is never copied which allows the reader to be used on a memory mapped file.
+ * Positions are relative to the position of the buffer when the reader was created.
+ *
+ * <p>This is used by both the linkable and the intermediate cache files.
+ *
+ * @author HardCoded
+ */
+public class SerialReader {
+	private final ByteBuffer buffer;
+	
+	public SerialReader(ByteBuffer buffer) {
+		this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+	
+	/**
+	 * Returns a new reader of the same data that starts at the specified position
+	 */
+	SerialReader at(int position) {
+		return new SerialReader(buffer.duplicate().position(position));
+	}
+	
+	int position() {
+		return buffer.position();
+	}
+	
+	/**
+	 * Returns the amount of bytes that can be read from the start of the data
+	 */
+	int length() {
+		return buffer.limit();
+	}
+	
+	/**
+	 * Returns the CRC32C checksum of the bytes after the offset
+	 */
+	int checksum(int offset) {
+		CRC32C crc = new CRC32C();
+		crc.update(buffer.duplicate().position(offset));
+		return (int) crc.getValue();
+	}
+	
+	void skip(int length) {
+		buffer.position(buffer.position() + length);
+	}
+	
+	public byte readByte() {
+		return buffer.get();
+	}
+	
+	public int readInt() {
+		return buffer.getInt();
+	}
+	
+	public long readLong() {
+		return buffer.getLong();
+	}
+	
+	public int readVarInt() throws IOException {
+		byte read = buffer.get();
+		if (read >= 0) {
+			return read;
+		}
+		
+		int result = read & 0b01111111;
+		for (int shift = 7; shift < 35; shift += 7) {
+			read = buffer.get();
+			result |= (read & 0b01111111) << shift;
+			
+			if (read >= 0) {
+				return result;
+			}
+		}
+		
+		throw new IOException("VarInt is too big");
+	}
+	
+	/**
+	 * Read a string in the format of {@link java.io.DataInputStream#readUTF()}
+	 */
+	public String readUTF() throws IOException {
+		int length = Short.toUnsignedInt(buffer.getShort());
+		int start = buffer.position();
+		int end = start + length;
+		if (end > buffer.limit()) {
+			throw new EOFException();
+		}
+		
+		char[] chars = new char[length];
+		int count = 0;
+		int i = start;
+		
+		// Most strings only contain ascii characters
+		while (i < end) {
+			int c = buffer.get(i);
+			if (c < 0) {
+				break;
+			}
+			
+			chars[count++] = (char) c;
+			i++;
+		}
+		
+		while (i < end) {
+			int c = buffer.get(i) & 0xff;
+			if (c < 0x80) {
+				chars[count++] = (char) c;
+				i += 1;
+			} else if ((c & 0xe0) == 0xc0 && i + 1 < end) {
+				int c2 = buffer.get(i + 1);
+				if ((c2 & 0xc0) != 0x80) {
+					throw new UTFDataFormatException("Malformed input around byte " + (i - start));
+				}
+				
+				chars[count++] = (char) (((c & 0x1f) << 6) | (c2 & 0x3f));
+				i += 2;
+			} else if ((c & 0xf0) == 0xe0 && i + 2 < end) {
+				int c2 = buffer.get(i + 1);
+				int c3 = buffer.get(i + 2);
+				if ((c2 & 0xc0) != 0x80 || (c3 & 0xc0) != 0x80) {
+					throw new UTFDataFormatException("Malformed input around byte " + (i - start));
+				}
+				
+				chars[count++] = (char) (((c & 0x0f) << 12) | ((c2 & 0x3f) << 6) | (c3 & 0x3f));
+				i += 3;
+			} else {
+				throw new UTFDataFormatException("Malformed input around byte " + (i - start));
+			}
+		}
+		
+		buffer.position(end);
+		return new String(chars, 0, count);
+	}
+}
@@ -0,0 +1,142 @@
+package me.hardcoded.compiler.parser.serial;
+
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes values into a growing byte array.
+ *
+ * <p>Values that are only known after more data has been written can be reserved and written
+ * later with {@link #setInt(int, int)}.
+ *
+ * <p>This is used by both the linkable and the intermediate cache files.
+ *
+ * @author HardCoded
+ */
+public class SerialWriter {
+	private byte[] bytes;
+	private int size;
+	
+	public SerialWriter() {
+		this.bytes = new byte[4096];
+	}
+	
+	/**
+	 * Returns the amount of bytes written
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public void writeByte(int value) {
+		ensureCapacity(1);
+		bytes[size++] = (byte) value;
+	}
+	
+	public void writeInt(int value) {
+		ensureCapacity(4);
+		putInt(size, value);
+		size += 4;
+	}
+	
+	public void writeLong(long value) {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+	
+	public void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0b01111111) != 0) {
+			bytes[size++] = (byte) ((value & 0b01111111) | 0b10000000);
+			value >>>= 7;
+		}
+		
+		bytes[size++] = (byte) value;
+	}
+	
+	/**
+	 * Write a string in the format of {@link java.io.DataOutputStream#writeUTF(String)}
+	 */
+	public void writeUTF(String string) throws UTFDataFormatException {
+		int length = string.length();
+		int utfLength = length;
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c == 0 || c > 0x7f) {
+				utfLength += c > 0x7ff ? 2 : 1;
+			}
+		}
+		
+		if (utfLength > 0xffff) {
+			throw new UTFDataFormatException("Encoded string is too long: " + utfLength + " bytes");
+		}
+		
+		ensureCapacity(2 + utfLength);
+		bytes[size++] = (byte) (utfLength >>> 8);
+		bytes[size++] = (byte) utfLength;
+		
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c != 0 && c <= 0x7f) {
+				bytes[size++] = (byte) c;
+			} else if (c <= 0x7ff) {
+				bytes[size++] = (byte) (0xc0 | (c >> 6));
+				bytes[size++] = (byte) (0x80 | (c & 0x3f));
+			} else {
+				bytes[size++] = (byte) (0xe0 | (c >> 12));
+				bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				bytes[size++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+	}
+	
+	/**
+	 * Replace an int that has already been written
+	 *
+	 * @param offset the offset of the int
+	 * @param value  the new value
+	 */
+	void setInt(int offset, int value) {
+		if (offset < 0 || offset + 4 > size) {
+			throw new IndexOutOfBoundsException(offset);
+		}
+		
+		putInt(offset, value);
+	}
+	
+	/**
+	 * Returns the CRC32C checksum of the bytes written after the offset
+	 */
+	int checksum(int offset) {
+		CRC32C crc = new CRC32C();
+		crc.update(bytes, offset, size - offset);
+		return (int) crc.getValue();
+	}
+	
+	/**
+	 * Write all bytes written to this writer to another writer
+	 */
+	public void writeTo(SerialWriter out) {
+		out.ensureCapacity(size);
+		System.arraycopy(bytes, 0, out.bytes, out.size, size);
+		out.size += size;
+	}
+	
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes, size);
+	}
+	
+	private void putInt(int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+	
+	private void ensureCapacity(int length) {
+		if (size + length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+		}
+	}
+}
@@ -6,11 +6,13 @@ import me.hardcoded.compiler.parser.type.Reference;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 public class FuncStat extends Stat {
 	private List<Reference> parameters;
 	private Reference reference;
-	private Stat body;
+	private volatile Stat body;
+	private Supplier<Stat> lazyBody;
 	
 	public FuncStat(ISyntaxPos syntaxPos, List<Reference> parameters, Reference reference) {
 		super(syntaxPos);
@@ -26,11 +28,30 @@ public class FuncStat extends Stat {
 		return parameters;
 	}
 	
-	public void setBody(Stat body) {
+	public synchronized void setBody(Stat body) {
 		this.body = body;
+		this.lazyBody = null;
+	}
+	
+	/**
+	 * Set a body that is created when it is first accessed
+	 */
+	public synchronized void setLazyBody(Supplier<Stat> lazyBody) {
+		this.body = null;
+		this.lazyBody = lazyBody;
 	}
 	
 	public Stat getBody() {
+		Stat body = this.body;
+		return body != null ? body : loadBody();
+	}
+	
+	private synchronized Stat loadBody() {
+		if (body == null && lazyBody != null) {
+			body = lazyBody.get();
+			lazyBody = null;
+		}
+		
 		return body;
 	}
 	
@@ -0,0 +1,18 @@
+package me.hardcoded.configuration;
+
+/**
+ * The checksum used to validate cache files.
+ *
+ * @author HardCoded
+ */
+public enum ChecksumType {
+	/**
+	 * A cryptographic hash of the file. <i>Default</i>
+	 */
+	SHA_1,
+	
+	/**
+	 * A faster non-cryptographic checksum of the file
+	 */
+	CRC32C,
+}
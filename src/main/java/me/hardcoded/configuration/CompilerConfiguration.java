@@ -39,7 +39,32 @@ public class CompilerConfiguration {
 		/**
 		 * Cache option. <i>Default is True</i>
 		 */
-		USE_CACHE("use_cache");
+		USE_CACHE("use_cache"),
+		
+		/**
+		 * Check that cache files are serialized correctly. <i>Default is False</i>
+		 */
+		VERIFY_CACHE("verify_cache"),
+		
+		/**
+		 * The checksum used to validate cache files. <i>Default sha_1</i>
+		 */
+		CHECKSUM("checksum"),
+		
+		/**
+		 * Store all cache files inside a single archive. <i>Default is False</i>
+		 */
+		CACHE_ARCHIVE("cache_archive"),
+		
+		/**
+		 * A cache directory that is shared between projects. <i>Default none</i>
+		 */
+		SHARED_CACHE("shared_cache"),
+		
+		/**
+		 * The maximum size of the shared cache in bytes. <i>Default 512 MiB</i>
+		 */
+		SHARED_CACHE_SIZE("shared_cache_size");
 		
 		public final String key;
 		
@@ -54,6 +79,11 @@ public class CompilerConfiguration {
 		this.map = new HashMap<>();
 		
 		set(Type.USE_CACHE, true);
+		set(Type.VERIFY_CACHE, false);
+		set(Type.CHECKSUM, ChecksumType.SHA_1);
+		set(Type.CACHE_ARCHIVE, false);
+		set(Type.SHARED_CACHE, null);
+		set(Type.SHARED_CACHE_SIZE, 512L * 1024 * 1024);
 		set(Type.OUTPUT_FORMAT, OutputFormat.IR);
 		set(Type.TARGET_FORMAT, TargetFormat.BYTECODE);
 		setSourceFile("");
@@ -85,6 +115,26 @@ public class CompilerConfiguration {
 		return get(Type.USE_CACHE);
 	}
 	
+	public boolean verifyCache() {
+		return get(Type.VERIFY_CACHE);
+	}
+	
+	public ChecksumType getChecksumType() {
+		return get(Type.CHECKSUM);
+	}
+	
+	public boolean useCacheArchive() {
+		return get(Type.CACHE_ARCHIVE);
+	}
+	
+	public File getSharedCacheFolder() {
+		return get(Type.SHARED_CACHE);
+	}
+	
+	public long getSharedCacheSize() {
+		return get(Type.SHARED_CACHE_SIZE);
+	}
+	
 	void setOutputFormat(OutputFormat format) {
 		set(Type.OUTPUT_FORMAT, format);
 	}
@@ -151,7 +201,17 @@ public class CompilerConfiguration {
 			"    -c --compile\n" +
 			"                  set the compiler mode to compile (default)\n\n" +
 			"    -r --run\n" +
-			"                  set the compiler mode to run\n";
+			"                  set the compiler mode to run\n\n" +
+			"    --verify-cache\n" +
+			"                  check that each linkable object survives a cache round-trip\n\n" +
+			"    --checksum <type>\n" +
+			"                  set the checksum used to validate cache files (default sha_1)\n\n" +
+			"    --cache-archive\n" +
+			"                  store all cache files inside a single archive\n\n" +
+			"    --shared-cache <path>\n" +
+			"                  share cache files between projects with a cache directory\n\n" +
+			"    --shared-cache-size <mb>\n" +
+			"                  set the size of the shared cache directory (default 512)\n";
 	}
 	
 	public static String getFormatListMessage() {
@@ -178,6 +238,16 @@ public class CompilerConfiguration {
 			
 			--use-cache <boolean>       change how the compiler deals with cache files
 			
+			--verify-cache				check that each linkable object survives a cache round-trip
+			
+			--checksum <value>			set the checksum used to validate cache files
+			
+			--cache-archive				store all cache files inside a single archive
+			
+			--shared-cache <path>		share cache files between projects with a cache directory
+			
+			--shared-cache-size <mb>	set the size of the shared cache directory
+			
 			-i <source>					specify the input file to compile
 			
 			-o <outputFolder>			specify the output folder
@@ -227,6 +297,26 @@ public class CompilerConfiguration {
 						config.set(Type.USE_CACHE, Boolean.parseBoolean(args[++i]));
 					}
 					
+					case "--verify-cache" -> {
+						config.set(Type.VERIFY_CACHE, true);
+					}
+					
+					case "--checksum" -> {
+						config.set(Type.CHECKSUM, ChecksumType.valueOf(args[++i].toUpperCase()));
+					}
+					
+					case "--cache-archive" -> {
+						config.set(Type.CACHE_ARCHIVE, true);
+					}
+					
+					case "--shared-cache" -> {
+						config.set(Type.SHARED_CACHE, Path.of(args[++i]).toAbsolutePath().toFile());
+					}
+					
+					case "--shared-cache-size" -> {
+						config.set(Type.SHARED_CACHE_SIZE, Long.parseLong(args[++i]) * 1024 * 1024);
+					}
+					
 					default -> {
 						logger.info("Invalid argument '{}'", str);
 						logger.info("{}", getHelpMessage());
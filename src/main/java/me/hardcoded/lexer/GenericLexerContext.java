@@ -1,7 +1,9 @@
 package me.hardcoded.lexer;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -25,38 +27,94 @@ public class GenericLexerContext<T> {
 	public GenericLexerContext<T> addRule(T type, Consumer<LexerRule> consumer) {
 		LexerRule rule = new LexerRule(type);
 		consumer.accept(rule);
+		rule.compileKeywords();
 		rules.add(rule);
 		return this;
 	}
 	
-	public List<LexerToken> parse(String input) {
+	public List<LexerToken> parse(CharSequence input) {
 		List<LexerToken> tokenList = new ArrayList<>();
-		int last_length = 0;
 		
-		LexerToken lexerToken;
-		while ((lexerToken = nextToken(input)) != null) {
-			if (input.isEmpty() || (last_length == input.length())) break;
-			
-			if (lexerToken.type != whitespace) {
-				tokenList.add(lexerToken);
+		LexerCursor cursor = cursor(input);
+		while (cursor.next()) {
+			if (cursor.getType() != whitespace) {
+				tokenList.add(cursor.getToken());
 			}
-			
-			last_length = input.length();
-			input = input.substring(lexerToken.length);
 		}
 		
 		return tokenList;
 	}
 	
+	/**
+	 * Returns a cursor that reads tokens from the input without copying it.
+	 *
+	 * @param input the input
+	 */
+	public LexerCursor cursor(CharSequence input) {
+		return new LexerCursor(input, 0);
+	}
+	
+	/**
+	 * Returns a cursor that reads tokens from the input starting at the specified offset.
+	 *
+	 * @param input  the input
+	 * @param offset the offset of the first token
+	 */
+	public LexerCursor cursor(CharSequence input, int offset) {
+		return new LexerCursor(input, offset);
+	}
+	
 	public GenericLexerContext<T> toImmutable() {
 		return new ImmutableGenericContext<T>(this);
 	}
 	
+	/**
+	 * Returns an immutable context where all rules are compiled into a single deterministic automaton.
+	 *
+	 * <p>The automaton matches the longest string of a regex while java regex picks the first alternative
+	 * that matches. A regex like {@code a|ab} matches one character of {@code "ab"} in the other contexts
+	 * and two characters in the compiled context. Rules should put the longer alternatives first.
+	 *
+	 * @throws java.util.regex.PatternSyntaxException if a rule uses regex features that can not be compiled
+	 */
+	public GenericLexerContext<T> toCompiled() {
+		return new CompiledGenericContext<T>(this);
+	}
+	
 	public LexerToken nextToken(String input) {
+		return nextToken(input, 0);
+	}
+	
+	/**
+	 * Returns the token at the specified offset or {@code null} if no rule matched.
+	 *
+	 * @param input  the input
+	 * @param offset the offset of the token
+	 */
+	public LexerToken nextToken(CharSequence input, int offset) {
+		LexerCursor cursor = new LexerCursor(input, offset);
+		return cursor.next() ? cursor.getToken() : null;
+	}
+	
+	/**
+	 * Match the longest rule at the offset of the cursor.
+	 *
+	 * @param cursor the cursor
+	 * @return {@code true} if a rule was matched
+	 */
+	protected boolean match(LexerCursor cursor) {
+		if (cursor.matchers == null) {
+			cursor.matchers = new Matcher[rules.size()][];
+			for (int i = 0; i < rules.size(); i++) {
+				cursor.matchers[i] = rules.get(i).createMatchers(cursor.input);
+			}
+		}
+		
 		LexerRule selectedRule = null;
 		int longestRule = 1;
-		for (LexerRule rule : rules) {
-			int length = rule.getMatchLength(input);
+		for (int i = 0; i < rules.size(); i++) {
+			LexerRule rule = rules.get(i);
+			int length = rule.getMatchLength(cursor.matchers[i], cursor.offset);
 			
 			if (length >= longestRule) {
 				longestRule = length;
@@ -64,17 +122,113 @@ public class GenericLexerContext<T> {
 			}
 		}
 		
-		return selectedRule == null ? null:new LexerToken(selectedRule.type, input.substring(0, longestRule));
+		if (selectedRule == null) {
+			return false;
+		}
+		
+		cursor.setMatch(selectedRule, longestRule);
+		return true;
+	}
+	
+	/**
+	 * Returns the offset after the last character that was examined when matching the current token of the cursor.
+	 * This implementation does not know how far the regex matchers looked so it returns {@code input.length() + 1}.
+	 *
+	 * @param cursor the cursor
+	 */
+	protected int lookahead(LexerCursor cursor) {
+		return cursor.input.length() + 1;
+	}
+	
+	/**
+	 * A cursor that matches tokens at an offset of the input.
+	 * Reading tokens with this class does not allocate any objects.
+	 */
+	public class LexerCursor {
+		private final CharSequence input;
+		private Matcher[][] matchers;
+		private int offset;
+		private int length;
+		private T type;
+		
+		private LexerCursor(CharSequence input, int offset) {
+			this.input = input;
+			this.offset = offset;
+		}
+		
+		/**
+		 * Move the cursor to the next token.
+		 *
+		 * @return {@code true} if a token was matched, {@code false} if the input ended or no rule matched
+		 */
+		public boolean next() {
+			offset += length;
+			length = 0;
+			type = null;
+			
+			return offset < input.length() && match(this);
+		}
+		
+		private void setMatch(LexerRule rule, int length) {
+			this.type = rule.getType(input, offset, length);
+			this.length = length;
+		}
+		
+		/**
+		 * Returns {@code true} if all characters of the input has been read
+		 */
+		public boolean isFinished() {
+			return offset + length >= input.length();
+		}
+		
+		public CharSequence getInput() {
+			return input;
+		}
+		
+		public T getType() {
+			return type;
+		}
+		
+		public int getOffset() {
+			return offset;
+		}
+		
+		public int getLength() {
+			return length;
+		}
+		
+		public String getContent() {
+			return input.subSequence(offset, offset + length).toString();
+		}
+		
+		public LexerToken getToken() {
+			return new LexerToken(type, getContent(), offset);
+		}
+		
+		/**
+		 * Returns the offset after the last character that was examined when matching the current token.
+		 * The current token can only change if the input is modified before this offset.
+		 * If the end of the input was examined this returns {@code input.length() + 1}.
+		 */
+		public int getLookahead() {
+			return lookahead(this);
+		}
 	}
 	
 	public class LexerToken {
 		public final T type;
 		public final String content;
+		public final int offset;
 		public final int length;
 		
 		public LexerToken(T type, String content) {
+			this(type, content, 0);
+		}
+		
+		public LexerToken(T type, String content, int offset) {
 			this.length = content.length();
 			this.content = content;
+			this.offset = offset;
 			this.type = type;
 		}
 	}
@@ -83,13 +237,22 @@ public class GenericLexerContext<T> {
 		public final List<Pattern> matches;
 		public final T type;
 		
+		// Used when compiling the rule into a deterministic automaton
+		final List<LexerNfa.Source> sources;
+		
+		// Keywords are classified after the rule has matched
+		private Map<String, T> keywordMap;
+		private KeywordTable<T> keywords;
+		
 		public LexerRule(T type) {
 			this.matches = new ArrayList<>();
+			this.sources = new ArrayList<>();
 			this.type = type;
 		}
 		
 		public LexerRule addString(String value) {
 			this.matches.add(Pattern.compile(StringUtils.regexEscape(value)));
+			this.sources.add(new LexerNfa.Literal(value));
 			return this;
 		}
 		
@@ -101,8 +264,47 @@ public class GenericLexerContext<T> {
 			return this;
 		}
 		
+		/**
+		 * Tokens matched by this rule that are equal to the keyword will get the specified type.
+		 * This is faster than adding a separate string rule for each keyword.
+		 */
+		public LexerRule addKeyword(T type, String keyword) {
+			if (keywordMap == null) {
+				keywordMap = new LinkedHashMap<>();
+			}
+			
+			keywordMap.put(keyword, type);
+			return this;
+		}
+		
+		public LexerRule addKeywords(T type, String... keywords) {
+			for (String keyword : keywords) {
+				addKeyword(type, keyword);
+			}
+			
+			return this;
+		}
+		
+		private void compileKeywords() {
+			if (keywordMap != null) {
+				keywords = new KeywordTable<>(keywordMap);
+			}
+		}
+		
+		/**
+		 * Returns the type of a token matched by this rule
+		 *
+		 * @param input  the input
+		 * @param offset the offset of the token
+		 * @param length the length of the token
+		 */
+		T getType(CharSequence input, int offset, int length) {
+			return keywords == null ? type : keywords.get(input, offset, length, type);
+		}
+		
 		public LexerRule addRegex(String regex) {
 			this.matches.add(Pattern.compile(regex));
+			this.sources.add(new LexerNfa.Regex(regex, 0));
 			return this;
 		}
 		
@@ -143,15 +345,29 @@ public class GenericLexerContext<T> {
 			}
 			
 			this.matches.add(Pattern.compile(regex, flags));
+			this.sources.add(new LexerNfa.Delimiter(open, escape, close, flags));
 			return this;
 		}
 		
 		public int getMatchLength(String string) {
+			return getMatchLength(createMatchers(string), 0);
+		}
+		
+		Matcher[] createMatchers(CharSequence input) {
+			Matcher[] result = new Matcher[matches.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = matches.get(i).matcher(input);
+			}
+			
+			return result;
+		}
+		
+		int getMatchLength(Matcher[] matchers, int offset) {
 			int length = 0;
-			for (Pattern pattern : matches) {
-				Matcher matcher = pattern.matcher(string);
+			for (Matcher matcher : matchers) {
+				matcher.region(offset, matcher.regionEnd());
 				if (matcher.lookingAt()) {
-					length = Math.max(length, matcher.end());
+					length = Math.max(length, matcher.end() - offset);
 				}
 			}
 			
@@ -169,4 +385,29 @@ public class GenericLexerContext<T> {
 			throw new UnsupportedOperationException();
 		}
 	}
+	
+	public static class CompiledGenericContext<T> extends ImmutableGenericContext<T> {
+		private final LexerDfa dfa;
+		
+		private CompiledGenericContext(GenericLexerContext<T> context) {
+			super(context);
+			this.dfa = LexerDfa.compile(rules.stream().map(rule -> rule.sources).toList());
+		}
+		
+		@Override
+		protected boolean match(LexerCursor cursor) {
+			long match = dfa.match(cursor.input, cursor.offset);
+			if (match < 0) {
+				return false;
+			}
+			
+			cursor.setMatch(rules.get(LexerDfa.getRule(match)), LexerDfa.getLength(match));
+			return true;
+		}
+		
+		@Override
+		protected int lookahead(LexerCursor cursor) {
+			return dfa.lookahead(cursor.input, cursor.offset);
+		}
+	}
 }
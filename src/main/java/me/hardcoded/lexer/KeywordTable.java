@@ -0,0 +1,106 @@
+package me.hardcoded.lexer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A perfect hash table that maps a range of characters to a keyword type.
+ *
+ * <p>The seed of the hash function is selected when the table is created so that
+ * no two keywords share a slot. A lookup computes one hash and compares at most one
+ * keyword without allocating any objects.
+ *
+ * @author HardCoded
+ */
+final class KeywordTable<T> {
+	private static final int MAX_SEEDS = 1 << 16;
+	
+	private final String[] words;
+	private final Object[] types;
+	private final int seed;
+	private final int mask;
+	
+	KeywordTable(Map<String, T> keywords) {
+		for (int size = Integer.highestOneBit(Math.max(1, keywords.size() * 2 - 1)) << 1; ; size <<= 1) {
+			int seed = findSeed(keywords, size);
+			if (seed < 0) {
+				continue;
+			}
+			
+			this.words = new String[size];
+			this.types = new Object[size];
+			this.seed = seed;
+			this.mask = size - 1;
+			
+			for (Map.Entry<String, T> entry : keywords.entrySet()) {
+				String word = entry.getKey();
+				int slot = hash(word, 0, word.length(), seed) & mask;
+				words[slot] = word;
+				types[slot] = entry.getValue();
+			}
+			
+			return;
+		}
+	}
+	
+	/**
+	 * Returns the first seed that does not produce any collisions or {@code -1} if none was found
+	 */
+	private static int findSeed(Map<String, ?> keywords, int size) {
+		boolean[] used = new boolean[size];
+		
+		search:
+		for (int seed = 0; seed < MAX_SEEDS; seed++) {
+			Arrays.fill(used, false);
+			
+			for (String word : keywords.keySet()) {
+				int slot = hash(word, 0, word.length(), seed) & (size - 1);
+				if (used[slot]) {
+					continue search;
+				}
+				
+				used[slot] = true;
+			}
+			
+			return seed;
+		}
+		
+		return -1;
+	}
+	
+	private static int hash(CharSequence input, int offset, int length, int seed) {
+		int hash = seed * 0x9e3779b9 + length;
+		for (int i = 0; i < length; i++) {
+			hash = hash * 31 + input.charAt(offset + i);
+		}
+		
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		return hash ^ (hash >>> 13);
+	}
+	
+	/**
+	 * Returns the type of the keyword or {@code fallback} if the characters are not a keyword.
+	 *
+	 * @param input    the input
+	 * @param offset   the offset of the characters
+	 * @param length   the amount of characters
+	 * @param fallback the type returned if no keyword matched
+	 */
+	@SuppressWarnings("unchecked")
+	T get(CharSequence input, int offset, int length, T fallback) {
+		int slot = hash(input, offset, length, seed) & mask;
+		String word = words[slot];
+		if (word == null || word.length() != length) {
+			return fallback;
+		}
+		
+		for (int i = 0; i < length; i++) {
+			if (word.charAt(i) != input.charAt(offset + i)) {
+				return fallback;
+			}
+		}
+		
+		return (T) types[slot];
+	}
+}
@@ -0,0 +1,325 @@
+package me.hardcoded.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A table driven deterministic automaton compiled from a list of lexer rules.
+ *
+ * <p>The automaton scans the input once and returns the longest match. If
+ * multiple rules match the same length the rule that was added last is selected,
+ * this is the same behaviour as the regex matching inside {@link GenericLexerContext}.
+ *
+ * <p>Unlike java regex the longest match of a single regex is returned and not the
+ * first alternative that matches, {@code a|ab} matches all of {@code "ab"}.
+ *
+ * @author HardCoded
+ */
+final class LexerDfa {
+	private static final int ASCII = 128;
+	
+	// Character classes
+	private final int[] asciiClasses;
+	private final char[] classStarts;
+	private final int classCount;
+	
+	// States
+	private final int[] transitions;
+	private final int[] accepts;
+	
+	private LexerDfa(int[] boundaries, int[] transitions, int[] accepts) {
+		this.classCount = boundaries.length;
+		this.classStarts = new char[boundaries.length];
+		for (int i = 0; i < boundaries.length; i++) {
+			classStarts[i] = (char) boundaries[i];
+		}
+		
+		this.asciiClasses = new int[ASCII];
+		for (int i = 0; i < ASCII; i++) {
+			asciiClasses[i] = findClass((char) i);
+		}
+		
+		this.transitions = transitions;
+		this.accepts = accepts;
+	}
+	
+	private int findClass(char c) {
+		int index = Arrays.binarySearch(classStarts, c);
+		return index < 0 ? (-index - 2) : index;
+	}
+	
+	private int getClass(char c) {
+		return c < ASCII ? asciiClasses[c] : findClass(c);
+	}
+	
+	/**
+	 * Returns the longest match at the specified offset.
+	 * The result contains the rule index in the upper 32 bits and the length in the lower 32 bits.
+	 *
+	 * @param input  the input
+	 * @param offset the offset to start matching from
+	 * @return the packed match or {@code -1} if no rule matched
+	 */
+	long match(CharSequence input, int offset) {
+		final int[] transitions = this.transitions;
+		final int[] accepts = this.accepts;
+		final int classCount = this.classCount;
+		
+		int length = input.length();
+		int state = 0;
+		int matchRule = -1;
+		int matchEnd = offset;
+		
+		for (int i = offset; i < length; i++) {
+			state = transitions[state * classCount + getClass(input.charAt(i))];
+			if (state < 0) {
+				break;
+			}
+			
+			int rule = accepts[state];
+			if (rule >= 0) {
+				matchRule = rule;
+				matchEnd = i + 1;
+			}
+		}
+		
+		return matchRule < 0 ? -1 : (((long) matchRule << 32) | (matchEnd - offset));
+	}
+	
+	/**
+	 * Returns the offset after the last character examined when matching at the specified offset.
+	 * If the automaton reached the end of the input this returns {@code input.length() + 1}.
+	 *
+	 * @param input  the input
+	 * @param offset the offset to start matching from
+	 */
+	int lookahead(CharSequence input, int offset) {
+		final int[] transitions = this.transitions;
+		final int classCount = this.classCount;
+		
+		int length = input.length();
+		int state = 0;
+		for (int i = offset; i < length; i++) {
+			state = transitions[state * classCount + getClass(input.charAt(i))];
+			if (state < 0) {
+				return i + 1;
+			}
+		}
+		
+		return length + 1;
+	}
+	
+	static int getRule(long match) {
+		return (int) (match >>> 32);
+	}
+	
+	static int getLength(long match) {
+		return (int) match;
+	}
+	
+	/**
+	 * Compile the specified rule sources into a deterministic automaton.
+	 *
+	 * @param rules a list of sources for each rule. The index of the list is the rule index
+	 * @throws java.util.regex.PatternSyntaxException if a source could not be compiled
+	 */
+	static LexerDfa compile(List<List<LexerNfa.Source>> rules) {
+		LexerNfa nfa = new LexerNfa();
+		int start = nfa.newState();
+		
+		int pattern = 0;
+		for (int rule = 0; rule < rules.size(); rule++) {
+			for (LexerNfa.Source source : rules.get(rule)) {
+				nfa.addSource(start, source, rule, pattern++);
+			}
+		}
+		
+		int[] boundaries = computeBoundaries(nfa);
+		int classCount = boundaries.length;
+		
+		Map<StateSet, Integer> stateIds = new HashMap<>();
+		List<StateSet> states = new ArrayList<>();
+		IntList transitions = new IntList();
+		
+		StateSet initial = closure(nfa, new int[] { start }, 1);
+		stateIds.put(initial, 0);
+		states.add(initial);
+		
+		int[] move = new int[nfa.size()];
+		for (int index = 0; index < states.size(); index++) {
+			int[] set = states.get(index).states;
+			
+			for (int cls = 0; cls < classCount; cls++) {
+				char c = (char) boundaries[cls];
+				
+				int moveCount = 0;
+				for (int nfaState : set) {
+					int[] ranges = nfa.getRanges(nfaState);
+					if (ranges != null && contains(ranges, c)) {
+						move[moveCount++] = nfa.getTarget(nfaState);
+					}
+				}
+				
+				if (moveCount == 0) {
+					transitions.add(-1);
+					continue;
+				}
+				
+				StateSet next = closure(nfa, move, moveCount);
+				Integer id = stateIds.get(next);
+				if (id == null) {
+					id = states.size();
+					stateIds.put(next, id);
+					states.add(next);
+				}
+				
+				transitions.add(id);
+			}
+		}
+		
+		int[] accepts = new int[states.size()];
+		for (int i = 0; i < accepts.length; i++) {
+			int rule = -1;
+			for (int nfaState : states.get(i).states) {
+				rule = Math.max(rule, nfa.getAccept(nfaState));
+			}
+			
+			accepts[i] = rule;
+		}
+		
+		// The start state can never be accepting because a token must contain at least one character
+		accepts[0] = -1;
+		
+		return new LexerDfa(boundaries, transitions.toArray(), accepts);
+	}
+	
+	/**
+	 * Returns the first character of each character class
+	 */
+	private static int[] computeBoundaries(LexerNfa nfa) {
+		TreeSet<Integer> set = new TreeSet<>();
+		set.add(0);
+		
+		for (int i = 0; i < nfa.size(); i++) {
+			int[] ranges = nfa.getRanges(i);
+			if (ranges == null) {
+				continue;
+			}
+			
+			for (int j = 0; j < ranges.length; j += 2) {
+				set.add(ranges[j]);
+				if (ranges[j + 1] < LexerNfa.MAX_CHAR) {
+					set.add(ranges[j + 1] + 1);
+				}
+			}
+		}
+		
+		return set.stream().mapToInt(Integer::intValue).toArray();
+	}
+	
+	private static boolean contains(int[] ranges, char c) {
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (c < ranges[i]) {
+				return false;
+			}
+			
+			if (c <= ranges[i + 1]) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns the epsilon closure of the specified states.
+	 * Patterns that only match the shortest string are removed from the set after they have been accepted.
+	 */
+	private static StateSet closure(LexerNfa nfa, int[] input, int count) {
+		BitSet visited = new BitSet(nfa.size());
+		int[] stack = new int[nfa.size()];
+		int stackSize = 0;
+		
+		for (int i = 0; i < count; i++) {
+			if (!visited.get(input[i])) {
+				visited.set(input[i]);
+				stack[stackSize++] = input[i];
+			}
+		}
+		
+		BitSet finishedPatterns = null;
+		while (stackSize > 0) {
+			int state = stack[--stackSize];
+			
+			if (nfa.isShortest(state)) {
+				if (finishedPatterns == null) {
+					finishedPatterns = new BitSet();
+				}
+				
+				finishedPatterns.set(nfa.getPattern(state));
+			}
+			
+			int[] epsilons = nfa.getEpsilons(state);
+			if (epsilons != null) {
+				for (int next : epsilons) {
+					if (!visited.get(next)) {
+						visited.set(next);
+						stack[stackSize++] = next;
+					}
+				}
+			}
+		}
+		
+		if (finishedPatterns != null) {
+			for (int state = visited.nextSetBit(0); state >= 0; state = visited.nextSetBit(state + 1)) {
+				if (finishedPatterns.get(nfa.getPattern(state)) && !nfa.isShortest(state)) {
+					visited.clear(state);
+				}
+			}
+		}
+		
+		return new StateSet(visited.stream().toArray());
+	}
+	
+	private static class StateSet {
+		private final int[] states;
+		private final int hashCode;
+		
+		private StateSet(int[] states) {
+			this.states = states;
+			this.hashCode = Arrays.hashCode(states);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof StateSet set && Arrays.equals(states, set.states);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+	
+	private static class IntList {
+		private int[] array = new int[256];
+		private int size;
+		
+		void add(int value) {
+			if (size == array.length) {
+				array = Arrays.copyOf(array, size * 2);
+			}
+			
+			array[size++] = value;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(array, size);
+		}
+	}
+}
@@ -0,0 +1,552 @@
+package me.hardcoded.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A nondeterministic automaton built from the sources of lexer rules.
+ * This is only used as an intermediate step when compiling a {@link LexerDfa}.
+ *
+ * <p>Only a subset of the java regex syntax is supported. Literals, escapes,
+ * character classes, groups, alternations and the greedy quantifiers
+ * {@code ?}, {@code *} and {@code +} can be compiled. Delimiters are built
+ * directly and match the shortest possible string just like the lazy
+ * patterns created by {@link GenericLexerContext.LexerRule}.
+ *
+ * @author HardCoded
+ */
+class LexerNfa {
+	static final int MAX_CHAR = Character.MAX_VALUE;
+	
+	/**
+	 * The sources that a lexer rule can be built from
+	 */
+	interface Source {
+	}
+	
+	record Literal(String value) implements Source {
+	}
+	
+	record Regex(String regex, int flags) implements Source {
+	}
+	
+	record Delimiter(String open, String escape, String close, int flags) implements Source {
+	}
+	
+	// Per state data
+	private final List<int[]> ranges;
+	private final List<int[]> epsilons;
+	private int[] targets;
+	private int[] accepts;
+	private int[] patterns;
+	private boolean[] shortest;
+	private int count;
+	
+	LexerNfa() {
+		this.ranges = new ArrayList<>();
+		this.epsilons = new ArrayList<>();
+		this.targets = new int[64];
+		this.accepts = new int[64];
+		this.patterns = new int[64];
+		this.shortest = new boolean[64];
+	}
+	
+	int size() {
+		return count;
+	}
+	
+	/**
+	 * Returns the character ranges {@code [lo, hi, lo, hi ...]} of the state or {@code null}
+	 */
+	int[] getRanges(int state) {
+		return ranges.get(state);
+	}
+	
+	int getTarget(int state) {
+		return targets[state];
+	}
+	
+	int[] getEpsilons(int state) {
+		return epsilons.get(state);
+	}
+	
+	/**
+	 * Returns the rule index accepted by the state or {@code -1}
+	 */
+	int getAccept(int state) {
+		return accepts[state];
+	}
+	
+	int getPattern(int state) {
+		return patterns[state];
+	}
+	
+	/**
+	 * Returns {@code true} if the pattern of this accepting state stops after the first match
+	 */
+	boolean isShortest(int state) {
+		return shortest[state];
+	}
+	
+	/**
+	 * Add a source to this automaton and connect it to the start state.
+	 *
+	 * @param start   the start state
+	 * @param source  the source
+	 * @param rule    the index of the rule
+	 * @param pattern an unique pattern id
+	 */
+	void addSource(int start, Source source, int rule, int pattern) {
+		int first = count;
+		int[] fragment;
+		boolean lazy = false;
+		
+		if (source instanceof Literal literal) {
+			fragment = literal(literal.value());
+		} else if (source instanceof Regex regex) {
+			fragment = new RegexParser(regex.regex(), regex.flags()).parse();
+		} else if (source instanceof Delimiter delimiter) {
+			fragment = delimiter(delimiter);
+			lazy = true;
+		} else {
+			throw new IllegalArgumentException("Unknown lexer source " + source);
+		}
+		
+		for (int i = first; i < count; i++) {
+			patterns[i] = pattern;
+		}
+		
+		addEpsilon(start, fragment[0]);
+		accepts[fragment[1]] = rule;
+		shortest[fragment[1]] = lazy;
+	}
+	
+	int newState() {
+		if (count == targets.length) {
+			int length = count * 2;
+			targets = Arrays.copyOf(targets, length);
+			accepts = Arrays.copyOf(accepts, length);
+			patterns = Arrays.copyOf(patterns, length);
+			shortest = Arrays.copyOf(shortest, length);
+		}
+		
+		ranges.add(null);
+		epsilons.add(null);
+		targets[count] = -1;
+		accepts[count] = -1;
+		patterns[count] = -1;
+		return count++;
+	}
+	
+	private void addEpsilon(int from, int to) {
+		int[] array = epsilons.get(from);
+		if (array == null) {
+			array = new int[] { to };
+		} else {
+			array = Arrays.copyOf(array, array.length + 1);
+			array[array.length - 1] = to;
+		}
+		
+		epsilons.set(from, array);
+	}
+	
+	/**
+	 * Returns a new fragment {@code [start, end]} that matches one character inside the ranges
+	 */
+	private int[] charRanges(int[] set) {
+		int start = newState();
+		int end = newState();
+		ranges.set(start, set);
+		targets[start] = end;
+		return new int[] { start, end };
+	}
+	
+	private int[] empty() {
+		int start = newState();
+		int end = newState();
+		addEpsilon(start, end);
+		return new int[] { start, end };
+	}
+	
+	private int[] concat(int[] a, int[] b) {
+		addEpsilon(a[1], b[0]);
+		return new int[] { a[0], b[1] };
+	}
+	
+	private int[] alternate(List<int[]> fragments) {
+		int start = newState();
+		int end = newState();
+		for (int[] fragment : fragments) {
+			addEpsilon(start, fragment[0]);
+			addEpsilon(fragment[1], end);
+		}
+		
+		return new int[] { start, end };
+	}
+	
+	private int[] repeat(int[] a, int min, boolean many) {
+		int start = newState();
+		int end = newState();
+		addEpsilon(start, a[0]);
+		addEpsilon(a[1], end);
+		
+		if (min == 0) {
+			addEpsilon(start, end);
+		}
+		
+		if (many) {
+			addEpsilon(a[1], a[0]);
+		}
+		
+		return new int[] { start, end };
+	}
+	
+	private int[] literal(String value) {
+		int[] result = empty();
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			result = concat(result, charRanges(new int[] { c, c }));
+		}
+		
+		return result;
+	}
+	
+	private int[] delimiter(Delimiter delimiter) {
+		int[] dot = CharRanges.dot(delimiter.flags());
+		String escape = delimiter.escape();
+		String close = delimiter.close();
+		
+		int[] body;
+		if (escape.isEmpty()) {
+			// Because the pattern stops after the first match this becomes 'open .*? close'
+			body = charRanges(dot);
+		} else {
+			if (escape.length() != 1 || close.length() != 1) {
+				throw new PatternSyntaxException("Only single character escapes and closings can be compiled", escape + close, 0);
+			}
+			
+			char e = escape.charAt(0);
+			char c = close.charAt(0);
+			int[] escaped = concat(literal(escape), charRanges(CharRanges.union(dot, CharRanges.of(e, e, c, c))));
+			int[] normal = charRanges(CharRanges.subtract(dot, CharRanges.of(e, e, c, c)));
+			body = alternate(List.of(escaped, normal));
+		}
+		
+		return concat(concat(literal(delimiter.open()), repeat(body, 0, true)), literal(close));
+	}
+	
+	/**
+	 * Utility methods for sorted character ranges {@code [lo, hi, lo, hi ...]}
+	 */
+	static class CharRanges {
+		static int[] of(int... pairs) {
+			return normalize(pairs);
+		}
+		
+		static int[] dot(int flags) {
+			if ((flags & Pattern.DOTALL) != 0) {
+				return new int[] { 0, MAX_CHAR };
+			}
+			
+			return subtract(new int[] { 0, MAX_CHAR }, of('\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'));
+		}
+		
+		static int[] union(int[] a, int[] b) {
+			int[] result = Arrays.copyOf(a, a.length + b.length);
+			System.arraycopy(b, 0, result, a.length, b.length);
+			return normalize(result);
+		}
+		
+		static int[] invert(int[] a) {
+			int[] result = new int[a.length + 2];
+			int length = 0;
+			int next = 0;
+			for (int i = 0; i < a.length; i += 2) {
+				if (a[i] > next) {
+					result[length++] = next;
+					result[length++] = a[i] - 1;
+				}
+				next = a[i + 1] + 1;
+			}
+			
+			if (next <= MAX_CHAR) {
+				result[length++] = next;
+				result[length++] = MAX_CHAR;
+			}
+			
+			return Arrays.copyOf(result, length);
+		}
+		
+		static int[] subtract(int[] a, int[] b) {
+			return invert(union(invert(a), b));
+		}
+		
+		/**
+		 * Sort and merge overlapping ranges
+		 */
+		static int[] normalize(int[] pairs) {
+			int count = pairs.length / 2;
+			long[] packed = new long[count];
+			for (int i = 0; i < count; i++) {
+				packed[i] = ((long) pairs[i * 2] << 32) | pairs[i * 2 + 1];
+			}
+			Arrays.sort(packed);
+			
+			int[] result = new int[pairs.length];
+			int length = 0;
+			for (long value : packed) {
+				int lo = (int) (value >>> 32);
+				int hi = (int) value;
+				if (length > 0 && lo <= result[length - 1] + 1) {
+					result[length - 1] = Math.max(result[length - 1], hi);
+				} else {
+					result[length++] = lo;
+					result[length++] = hi;
+				}
+			}
+			
+			return Arrays.copyOf(result, length);
+		}
+	}
+	
+	/**
+	 * Recursive descent parser for the supported regex syntax
+	 *
+	 * <pre>
+	 * Alternation ::= Concat ( '|' Concat )*
+	 * Concat      ::= Repeat*
+	 * Repeat      ::= Atom ( '?' | '*' | '+' )*
+	 * Atom        ::= '(' ( '?:' )? Alternation ')'
+	 *   | '[' Class ']'
+	 *   | '.'
+	 *   | Escape
+	 *   | Character
+	 * </pre>
+	 */
+	private class RegexParser {
+		private final String regex;
+		private final int flags;
+		private int index;
+		
+		RegexParser(String regex, int flags) {
+			this.regex = regex;
+			this.flags = flags;
+		}
+		
+		int[] parse() {
+			if ((flags & ~Pattern.DOTALL) != 0) {
+				throw error("Unsupported pattern flags");
+			}
+			
+			int[] result = alternation();
+			if (index < regex.length()) {
+				throw error("Unexpected character");
+			}
+			
+			return result;
+		}
+		
+		private PatternSyntaxException error(String message) {
+			return new PatternSyntaxException(message, regex, index);
+		}
+		
+		private boolean hasNext() {
+			return index < regex.length();
+		}
+		
+		private char peek() {
+			return regex.charAt(index);
+		}
+		
+		private char next() {
+			if (!hasNext()) {
+				throw error("Unexpected end of pattern");
+			}
+			
+			return regex.charAt(index++);
+		}
+		
+		private int[] alternation() {
+			List<int[]> fragments = new ArrayList<>();
+			fragments.add(concat());
+			while (hasNext() && peek() == '|') {
+				index++;
+				fragments.add(concat());
+			}
+			
+			return fragments.size() == 1 ? fragments.get(0) : alternate(fragments);
+		}
+		
+		private int[] concat() {
+			int[] result = empty();
+			while (hasNext() && peek() != '|' && peek() != ')') {
+				result = LexerNfa.this.concat(result, repeat());
+			}
+			
+			return result;
+		}
+		
+		private int[] repeat() {
+			int[] result = atom();
+			while (hasNext()) {
+				char c = peek();
+				if (c == '{') {
+					throw error("Bounded repetitions are not supported");
+				}
+				
+				if (c != '?' && c != '*' && c != '+') {
+					break;
+				}
+				
+				index++;
+				if (hasNext() && (peek() == '?' || peek() == '+')) {
+					throw error("Lazy and possessive quantifiers are not supported");
+				}
+				
+				result = switch (c) {
+					case '?' -> LexerNfa.this.repeat(result, 0, false);
+					case '*' -> LexerNfa.this.repeat(result, 0, true);
+					default -> LexerNfa.this.repeat(result, 1, true);
+				};
+			}
+			
+			return result;
+		}
+		
+		private int[] atom() {
+			char c = next();
+			switch (c) {
+				case '(' -> {
+					if (hasNext() && peek() == '?') {
+						index++;
+						if (next() != ':') {
+							throw error("Only non capturing groups are supported");
+						}
+					}
+					
+					int[] result = alternation();
+					if (next() != ')') {
+						throw error("Unclosed group");
+					}
+					
+					return result;
+				}
+				case '[' -> {
+					return charRanges(characterClass());
+				}
+				case '.' -> {
+					return charRanges(CharRanges.dot(flags));
+				}
+				case '\\' -> {
+					return charRanges(escape());
+				}
+				case '^', '$', '{', '}', '*', '+', '?', ')' -> {
+					throw error("Unsupported character '" + c + "'");
+				}
+				default -> {
+					return charRanges(CharRanges.of(c, c));
+				}
+			}
+		}
+		
+		private int[] characterClass() {
+			boolean negate = hasNext() && peek() == '^';
+			if (negate) {
+				index++;
+			}
+			
+			int[] result = new int[0];
+			do {
+				if (!hasNext()) {
+					throw error("Unclosed character class");
+				}
+				
+				char c = next();
+				int[] part;
+				if (c == '[' || (c == '&' && hasNext() && peek() == '&')) {
+					throw error("Nested and intersected classes are not supported");
+				} else if (c == '\\') {
+					part = escape();
+				} else {
+					part = CharRanges.of(c, c);
+				}
+				
+				// Ranges are only allowed between single characters
+				if (hasNext() && peek() == '-' && part.length == 2 && part[0] == part[1]
+					&& index + 1 < regex.length() && regex.charAt(index + 1) != ']') {
+					index++;
+					char d = next();
+					int[] end = (d == '\\') ? escape() : CharRanges.of(d, d);
+					if (end.length != 2 || end[0] != end[1] || end[0] < part[0]) {
+						throw error("Illegal character range");
+					}
+					
+					part = CharRanges.of(part[0], end[0]);
+				}
+				
+				result = CharRanges.union(result, part);
+			} while (!hasNext() || peek() != ']');
+			
+			index++;
+			return negate ? CharRanges.invert(result) : result;
+		}
+		
+		private int[] escape() {
+			char c = next();
+			return switch (c) {
+				case 't' -> CharRanges.of('\t', '\t');
+				case 'n' -> CharRanges.of('\n', '\n');
+				case 'r' -> CharRanges.of('\r', '\r');
+				case 'f' -> CharRanges.of('\f', '\f');
+				case 'a' -> CharRanges.of('\u0007', '\u0007');
+				case 'e' -> CharRanges.of('\u001b', '\u001b');
+				case 'd' -> CharRanges.of('0', '9');
+				case 'D' -> CharRanges.invert(CharRanges.of('0', '9'));
+				case 'w' -> CharRanges.of('a', 'z', 'A', 'Z', '0', '9', '_', '_');
+				case 'W' -> CharRanges.invert(CharRanges.of('a', 'z', 'A', 'Z', '0', '9', '_', '_'));
+				case 's' -> CharRanges.of(' ', ' ', '\t', '\r');
+				case 'S' -> CharRanges.invert(CharRanges.of(' ', ' ', '\t', '\r'));
+				case '0' -> {
+					int value = 0;
+					int digits = 0;
+					while (digits < 3 && hasNext() && peek() >= '0' && peek() <= '7' && value * 8 + (peek() - '0') <= 0xff) {
+						value = value * 8 + (next() - '0');
+						digits++;
+					}
+					
+					if (digits == 0) {
+						throw error("Illegal octal escape sequence");
+					}
+					
+					yield CharRanges.of(value, value);
+				}
+				case 'x' -> hexEscape(2);
+				case 'u' -> hexEscape(4);
+				default -> {
+					if (Character.isLetterOrDigit(c)) {
+						throw error("Unsupported escape sequence '\\" + c + "'");
+					}
+					
+					yield CharRanges.of(c, c);
+				}
+			};
+		}
+		
+		private int[] hexEscape(int digits) {
+			if (index + digits > regex.length()) {
+				throw error("Illegal hexadecimal escape sequence");
+			}
+			
+			try {
+				int value = Integer.parseInt(regex.substring(index, index + digits), 16);
+				index += digits;
+				return CharRanges.of(value, value);
+			} catch (NumberFormatException e) {
+				throw error("Illegal hexadecimal escape sequence");
+			}
+		}
+	}
+}
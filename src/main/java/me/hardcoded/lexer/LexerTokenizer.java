@@ -1,69 +1,138 @@
 package me.hardcoded.lexer;
 
-import me.hardcoded.compiler.context.AmpleLexer;
-import me.hardcoded.compiler.impl.ISyntaxPos;
-import me.hardcoded.lexer.Token.Type;
-import me.hardcoded.utils.Position;
-import me.hardcoded.utils.error.ErrorUtil;
-
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
 
 public class LexerTokenizer {
 	public static List<Token> parse(String path, byte[] bytes) {
-		List<Token> tokenList = parseKeepWhitespace(path, bytes);
-		tokenList.removeIf(token -> token.type == Type.WHITESPACE);
-		return tokenList;
+		return tokenize(path, bytes).toList();
 	}
 	
 	public static List<Token> parseKeepWhitespace(String path, byte[] bytes) {
-		String text = new String(bytes, StandardCharsets.UTF_8);
-		List<Token> tokenList = new ArrayList<>();
-		int offset = 0;
-		int line = 0;
-		int column = 0;
-		int length = text.length();
-		String input = text;
+		return tokenize(path, new String(bytes, StandardCharsets.UTF_8), true).toList();
+	}
+	
+	/**
+	 * Returns a buffer with all non whitespace tokens of the input
+	 *
+	 * @param path  the path of the input
+	 * @param bytes the UTF-8 encoded input
+	 */
+	public static TokenBuffer tokenize(String path, byte[] bytes) {
+		return tokenize(path, new String(bytes, StandardCharsets.UTF_8), false);
+	}
+	
+	public static TokenBuffer tokenize(String path, CharSequence text, boolean keepWhitespace) {
+		TokenBuffer buffer = new TokenBuffer(path, text);
+		
+		addTokens(buffer, new TokenScanner(path, text, keepWhitespace));
+		return buffer;
+	}
+	
+	/**
+	 * Returns a buffer with all non whitespace tokens of the input that can be updated with {@link #relex}.
+	 *
+	 * @param path the path of the input
+	 * @param text the input
+	 */
+	public static TokenBuffer tokenizeIncremental(String path, CharSequence text) {
+		TokenBuffer buffer = new TokenBuffer(path, text, true);
+		
+		TokenScanner scanner = new TokenScanner(path, text, false);
+		scanner.setTrackLookahead(true);
+		addTokens(buffer, scanner);
+		return buffer;
+	}
+	
+	/**
+	 * Returns the tokens of the text after an edit has been applied to it.
+	 *
+	 * <p>Tokens that were read without examining the edited region are reused. The lexer restarts
+	 * after the last of these tokens and stops as soon as it ends a token at the same place as a
+	 * previous token after the edit. The remaining tokens are copied from the previous buffer.
+	 *
+	 * @param previous the tokens before the edit, created by {@link #tokenizeIncremental} or this method
+	 * @param offset   the offset of the edit
+	 * @param removed  the amount of characters removed at the offset
+	 * @param inserted the text inserted at the offset
+	 * @throws IllegalArgumentException if the buffer does not store lookahead information
+	 */
+	public static TokenBuffer relex(TokenBuffer previous, int offset, int removed, CharSequence inserted) {
+		if (!previous.hasLookahead()) {
+			throw new IllegalArgumentException("The previous buffer was not created with lookahead information");
+		}
+		
+		CharSequence oldText = previous.getText();
+		String text = new StringBuilder(oldText.length() - removed + inserted.length())
+			.append(oldText, 0, offset)
+			.append(inserted)
+			.append(oldText, offset + removed, oldText.length())
+			.toString();
+		
+		// Find the first token that examined the edited region
+		int first = 0;
+		while (first < previous.size() && previous.getLookahead(first) <= offset) {
+			first++;
+		}
+		
+		TokenBuffer buffer = new TokenBuffer(previous.getPath(), text, true);
+		buffer.addShifted(previous, 0, first, 0);
 		
-		while (offset < length) {
-			Position startPos = new Position(column, line); // offset
+		int restart = (first == 0) ? 0 : previous.getEnd(first - 1);
+		TokenScanner scanner = new TokenScanner(previous.getPath(), text, restart, false);
+		scanner.setTrackLookahead(true);
+		
+		int shift = inserted.length() - removed;
+		int editEnd = offset + inserted.length();
+		int index = first;
+		while (scanner.next()) {
+			buffer.add(scanner.getType(), scanner.getStart(), scanner.getEnd(), scanner.getLookahead());
 			
-			GenericLexerContext<Type>.LexerToken lexerToken = AmpleLexer.LEXER.nextToken(input);
-			if (lexerToken == null) {
-				throw new RuntimeException(ErrorUtil.createFullError(
-					ISyntaxPos.of(path, startPos, startPos),
-					text,
-					"Could not parse token"
-				));
+			int end = scanner.getEnd();
+			if (end < editEnd) {
+				continue;
 			}
 			
-			if (lexerToken.length + offset > length) {
-				break;
+			// The text after both tokens is the same so the remaining tokens will be the same
+			while (index < previous.size() && previous.getEnd(index) + shift < end) {
+				index++;
 			}
 			
-			for (int i = offset; i < offset + lexerToken.length; i++) {
-				char c = text.charAt(i);
-				
-				if (c == '\n') {
-					line++;
-					column = 0;
-				} else {
-					column += (c == '\t') ? 4 : 1;
-				}
+			if (index < previous.size() && previous.getEnd(index) + shift == end && previous.getEnd(index) >= offset + removed) {
+				buffer.addShifted(previous, index + 1, previous.size(), shift);
+				break;
 			}
-			
-			Position endPos = new Position(column, line); // offset + lexerToken.length
-			tokenList.add(new Token(
-				lexerToken.type,
-				lexerToken.content,
-				ISyntaxPos.of(path, startPos, endPos)
-			));
-			
-			input = input.substring(lexerToken.length);
-			offset += lexerToken.length;
 		}
 		
-		return tokenList;
+		return buffer;
+	}
+	
+	private static void addTokens(TokenBuffer buffer, TokenScanner scanner) {
+		while (scanner.next()) {
+			buffer.add(scanner.getType(), scanner.getStart(), scanner.getEnd(), scanner.getLookahead());
+		}
+	}
+	
+	/**
+	 * Returns a source that reads the non whitespace tokens of the input on demand.
+	 * Only a bounded window of tokens is kept in memory.
+	 *
+	 * @param path the path of the input
+	 * @param text the input
+	 */
+	public static TokenWindow stream(String path, CharSequence text) {
+		return stream(path, text, null);
+	}
+	
+	/**
+	 * Returns a source that reads the non whitespace tokens of the input on demand.
+	 * The values of identifiers are interned in the specified symbol table.
+	 *
+	 * @param path    the path of the input
+	 * @param text    the input
+	 * @param symbols the table used to intern identifiers or {@code null}
+	 */
+	public static TokenWindow stream(String path, CharSequence text, SymbolTable symbols) {
+		return new TokenWindow(new TokenScanner(path, text, false), symbols);
 	}
 }
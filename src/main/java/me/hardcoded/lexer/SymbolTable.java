@@ -0,0 +1,98 @@
+package me.hardcoded.lexer;
+
+/**
+ * A table of interned identifier strings.
+ *
+ * <p>Each distinct identifier is only allocated once per table which allows
+ * references to the same name to share the same string instance. Looking up an
+ * identifier that has already been interned does not allocate any objects.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author HardCoded
+ */
+public class SymbolTable {
+	private String[] symbols;
+	private int size;
+	
+	public SymbolTable() {
+		this.symbols = new String[256];
+	}
+	
+	/**
+	 * Returns the interned string of the specified characters.
+	 *
+	 * @param input the input
+	 * @param start the start offset of the characters
+	 * @param end   the end offset of the characters
+	 */
+	public synchronized String intern(CharSequence input, int start, int end) {
+		int mask = symbols.length - 1;
+		int slot = hash(input, start, end) & mask;
+		
+		String symbol;
+		while ((symbol = symbols[slot]) != null) {
+			if (matches(symbol, input, start, end)) {
+				return symbol;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		symbol = input.subSequence(start, end).toString();
+		symbols[slot] = symbol;
+		
+		if (++size * 2 > symbols.length) {
+			resize();
+		}
+		
+		return symbol;
+	}
+	
+	public synchronized int size() {
+		return size;
+	}
+	
+	private void resize() {
+		String[] old = symbols;
+		symbols = new String[old.length * 2];
+		
+		int mask = symbols.length - 1;
+		for (String symbol : old) {
+			if (symbol != null) {
+				int slot = hash(symbol, 0, symbol.length()) & mask;
+				while (symbols[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				
+				symbols[slot] = symbol;
+			}
+		}
+	}
+	
+	private static boolean matches(String symbol, CharSequence input, int start, int end) {
+		if (symbol.length() != end - start) {
+			return false;
+		}
+		
+		for (int i = start; i < end; i++) {
+			if (symbol.charAt(i - start) != input.charAt(i)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the same hash as {@link String#hashCode()} with the high bits mixed into the low bits
+	 */
+	private static int hash(CharSequence input, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = hash * 31 + input.charAt(i);
+		}
+		
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,275 @@
+package me.hardcoded.lexer;
+
+import me.hardcoded.compiler.impl.ISyntaxPos;
+import me.hardcoded.lexer.Token.Type;
+import me.hardcoded.utils.LineIndex;
+import me.hardcoded.utils.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact list of tokens stored as parallel arrays.
+ *
+ * <p>Each token is stored as a type ordinal and a start and end offset inside the source text.
+ * Positions, {@link Token} objects and their values are only created when they are requested.
+ *
+ * @author HardCoded
+ */
+public class TokenBuffer implements TokenSource {
+	private static final Type[] TYPES = Type.values();
+	
+	private final String path;
+	private final CharSequence text;
+	private int[] types;
+	private int[] starts;
+	private int[] ends;
+	private int[] lookaheads;
+	private int size;
+	
+	// Lazily materialized values
+	private LineIndex lines;
+	private String[] values;
+	private Token[] tokens;
+	
+	public TokenBuffer(String path, CharSequence text) {
+		this(path, text, false);
+	}
+	
+	/**
+	 * @param trackLookahead if {@code true} this buffer stores how far the lexer looked ahead for each token
+	 * @see #getLookahead(int)
+	 */
+	public TokenBuffer(String path, CharSequence text, boolean trackLookahead) {
+		this.path = path;
+		this.text = text;
+		this.types = new int[16];
+		this.starts = new int[16];
+		this.ends = new int[16];
+		this.lookaheads = trackLookahead ? new int[16] : null;
+	}
+	
+	/**
+	 * Add a token to this buffer.
+	 *
+	 * @param type  the type of the token
+	 * @param start the start offset of the token
+	 * @param end   the end offset of the token
+	 */
+	public void add(Type type, int start, int end) {
+		add(type, start, end, 0);
+	}
+	
+	/**
+	 * Add a token to this buffer.
+	 *
+	 * @param type      the type of the token
+	 * @param start     the start offset of the token
+	 * @param end       the end offset of the token
+	 * @param lookahead the offset after the last character examined when reading the token
+	 */
+	public void add(Type type, int start, int end, int lookahead) {
+		ensureCapacity(size + 1);
+		
+		types[size] = type.ordinal();
+		starts[size] = start;
+		ends[size] = end;
+		if (lookaheads != null) {
+			lookaheads[size] = lookahead;
+		}
+		
+		size++;
+	}
+	
+	/**
+	 * Add tokens from another buffer and move them by the specified amount of characters.
+	 *
+	 * @param source the buffer to copy tokens from
+	 * @param from   the index of the first token to copy
+	 * @param to     the index after the last token to copy
+	 * @param shift  the amount of characters to move the tokens by
+	 */
+	void addShifted(TokenBuffer source, int from, int to, int shift) {
+		int count = to - from;
+		if (count <= 0) {
+			return;
+		}
+		
+		ensureCapacity(size + count);
+		System.arraycopy(source.types, from, types, size, count);
+		System.arraycopy(source.starts, from, starts, size, count);
+		System.arraycopy(source.ends, from, ends, size, count);
+		if (lookaheads != null) {
+			if (source.lookaheads != null) {
+				System.arraycopy(source.lookaheads, from, lookaheads, size, count);
+			} else {
+				Arrays.fill(lookaheads, size, size + count, 0);
+			}
+		}
+		
+		if (shift != 0) {
+			for (int i = size; i < size + count; i++) {
+				starts[i] += shift;
+				ends[i] += shift;
+				if (lookaheads != null && source.lookaheads != null) {
+					lookaheads[i] += shift;
+				}
+			}
+		}
+		
+		size += count;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity <= types.length) {
+			return;
+		}
+		
+		int length = Math.max(capacity, types.length * 2);
+		types = Arrays.copyOf(types, length);
+		starts = Arrays.copyOf(starts, length);
+		ends = Arrays.copyOf(ends, length);
+		if (lookaheads != null) {
+			lookaheads = Arrays.copyOf(lookaheads, length);
+		}
+	}
+	
+	@Override
+	public String getPath() {
+		return path;
+	}
+	
+	@Override
+	public CharSequence getText() {
+		return text;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	@Override
+	public boolean has(int index) {
+		return index >= 0 && index < size;
+	}
+	
+	@Override
+	public Type getType(int index) {
+		return TYPES[types[index]];
+	}
+	
+	public int getStart(int index) {
+		return starts[index];
+	}
+	
+	public int getEnd(int index) {
+		return ends[index];
+	}
+	
+	/**
+	 * Returns {@code true} if this buffer stores how far the lexer looked ahead for each token
+	 */
+	public boolean hasLookahead() {
+		return lookaheads != null;
+	}
+	
+	/**
+	 * Returns the offset after the last character that was examined when reading the token and the whitespace before it.
+	 * The token can only change if the text is modified before this offset.
+	 *
+	 * @throws IllegalStateException if this buffer does not store lookahead information
+	 */
+	public int getLookahead(int index) {
+		if (lookaheads == null) {
+			throw new IllegalStateException("This buffer does not store lookahead information");
+		}
+		
+		return lookaheads[index];
+	}
+	
+	@Override
+	public String getValue(int index) {
+		if (values == null || values.length < size) {
+			values = (values == null) ? new String[size] : Arrays.copyOf(values, size);
+		}
+		
+		String value = values[index];
+		if (value == null) {
+			value = text.subSequence(starts[index], ends[index]).toString();
+			values[index] = value;
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public Position getStartPosition(int index) {
+		return getLineIndex().getPosition(starts[index]);
+	}
+	
+	@Override
+	public Position getEndPosition(int index) {
+		return getLineIndex().getPosition(ends[index]);
+	}
+	
+	/**
+	 * Returns the line index of the text, the index is created the first time this method is called
+	 */
+	@Override
+	public LineIndex getLineIndex() {
+		if (lines == null) {
+			lines = new LineIndex(text);
+		}
+		
+		return lines;
+	}
+	
+	public ISyntaxPos getSyntaxPosition(int index) {
+		return getToken(index).syntaxPosition;
+	}
+	
+	/**
+	 * Returns the token at the specified index.
+	 * The token is created the first time this method is called.
+	 */
+	@Override
+	public Token getToken(int index) {
+		if (tokens == null || tokens.length < size) {
+			tokens = (tokens == null) ? new Token[size] : Arrays.copyOf(tokens, size);
+		}
+		
+		Token token = tokens[index];
+		if (token == null) {
+			token = new Token(
+				getType(index),
+				getValue(index),
+				ISyntaxPos.of(path, getLineIndex(), starts[index], ends[index])
+			);
+			tokens[index] = token;
+		}
+		
+		return token;
+	}
+	
+	@Override
+	public Position getLastPosition() {
+		return size == 0 ? new Position(0, 0) : getEndPosition(size - 1);
+	}
+	
+	/**
+	 * Returns a list of all tokens inside this buffer
+	 */
+	public List<Token> toList() {
+		List<Token> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(getToken(i));
+		}
+		
+		return list;
+	}
+}
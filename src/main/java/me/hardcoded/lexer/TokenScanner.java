@@ -0,0 +1,121 @@
+package me.hardcoded.lexer;
+
+import me.hardcoded.compiler.context.AmpleLexer;
+import me.hardcoded.compiler.impl.ISyntaxPos;
+import me.hardcoded.lexer.Token.Type;
+import me.hardcoded.utils.LineIndex;
+import me.hardcoded.utils.Position;
+import me.hardcoded.utils.error.ErrorUtil;
+
+/**
+ * Reads tokens one at a time from an input.
+ *
+ * <p>Only the offsets of the tokens are tracked, the line and column of an offset
+ * can be computed with a {@link LineIndex} when it is needed.
+ *
+ * @author HardCoded
+ */
+public class TokenScanner {
+	private final String path;
+	private final CharSequence text;
+	private final GenericLexerContext<Type>.LexerCursor cursor;
+	private final boolean keepWhitespace;
+	private boolean trackLookahead;
+	
+	// Current token
+	private Type type;
+	private int start;
+	private int end;
+	private int lookahead;
+	
+	public TokenScanner(String path, CharSequence text, boolean keepWhitespace) {
+		this(path, text, 0, keepWhitespace);
+	}
+	
+	/**
+	 * Create a scanner that starts reading at the specified offset.
+	 *
+	 * @param offset the offset to start reading from, this must be the end of a previously read token
+	 */
+	public TokenScanner(String path, CharSequence text, int offset, boolean keepWhitespace) {
+		this.path = path;
+		this.text = text;
+		this.cursor = AmpleLexer.LEXER.cursor(text, offset);
+		this.keepWhitespace = keepWhitespace;
+	}
+	
+	/**
+	 * Enable or disable computing how far the lexer looked ahead for each token
+	 *
+	 * @see #getLookahead()
+	 */
+	public void setTrackLookahead(boolean trackLookahead) {
+		this.trackLookahead = trackLookahead;
+	}
+	
+	/**
+	 * Read the next token from the input.
+	 *
+	 * @return {@code true} if a token was read, {@code false} if the end of the input was reached
+	 * @throws RuntimeException if the input contained characters that could not be parsed
+	 */
+	public boolean next() {
+		int scanned = 0;
+		while (cursor.next()) {
+			if (trackLookahead) {
+				scanned = Math.max(scanned, cursor.getLookahead());
+			}
+			
+			if (keepWhitespace || cursor.getType() != Type.WHITESPACE) {
+				type = cursor.getType();
+				start = cursor.getOffset();
+				end = start + cursor.getLength();
+				lookahead = scanned;
+				return true;
+			}
+		}
+		
+		if (!cursor.isFinished()) {
+			LineIndex lines = new LineIndex(text);
+			Position startPos = lines.getPosition(cursor.getOffset());
+			throw new RuntimeException(ErrorUtil.createFullError(
+				ISyntaxPos.of(path, startPos, startPos),
+				text,
+				lines,
+				"Could not parse token"
+			));
+		}
+		
+		return false;
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	public CharSequence getText() {
+		return text;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public int getStart() {
+		return start;
+	}
+	
+	public int getEnd() {
+		return end;
+	}
+	
+	/**
+	 * Returns the offset after the last character examined while reading the current token and the
+	 * whitespace skipped before it. This is only computed if lookahead tracking is enabled.
+	 *
+	 * @see #setTrackLookahead(boolean)
+	 */
+	public int getLookahead() {
+		return lookahead;
+	}
+}
@@ -0,0 +1,49 @@
+package me.hardcoded.lexer;
+
+import me.hardcoded.lexer.Token.Type;
+import me.hardcoded.utils.LineIndex;
+import me.hardcoded.utils.Position;
+
+/**
+ * A source of tokens that can be accessed by index.
+ *
+ * @author HardCoded
+ */
+public interface TokenSource {
+	/**
+	 * Returns the path of the input
+	 */
+	String getPath();
+	
+	/**
+	 * Returns {@code true} if there is a token at the specified index.
+	 * This method may read more tokens from the input.
+	 */
+	boolean has(int index);
+	
+	Type getType(int index);
+	
+	String getValue(int index);
+	
+	Position getStartPosition(int index);
+	
+	Position getEndPosition(int index);
+	
+	Token getToken(int index);
+	
+	/**
+	 * Returns the text the tokens were read from
+	 */
+	CharSequence getText();
+	
+	/**
+	 * Returns the line index used to compute the positions of the tokens
+	 */
+	LineIndex getLineIndex();
+	
+	/**
+	 * Returns the end position of the last token.
+	 * This is only valid after {@link #has(int)} has returned {@code false}.
+	 */
+	Position getLastPosition();
+}
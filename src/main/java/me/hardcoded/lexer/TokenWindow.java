@@ -0,0 +1,161 @@
+package me.hardcoded.lexer;
+
+import me.hardcoded.compiler.impl.ISyntaxPos;
+import me.hardcoded.lexer.Token.Type;
+import me.hardcoded.utils.LineIndex;
+import me.hardcoded.utils.Position;
+
+/**
+ * A token source that reads tokens on demand and only keeps the most recent tokens in memory.
+ *
+ * <p>Tokens are stored in a ring buffer. Accessing a token that is older than
+ * {@link #CAPACITY} tokens from the newest read token will throw an exception.
+ *
+ * @author HardCoded
+ */
+public class TokenWindow implements TokenSource {
+	public static final int CAPACITY = 64;
+	private static final int MASK = CAPACITY - 1;
+	private static final Type[] TYPES = Type.values();
+	
+	private final TokenScanner scanner;
+	private final SymbolTable symbols;
+	private final int[] types;
+	private final int[] starts;
+	private final int[] ends;
+	private final String[] values;
+	private final Token[] tokens;
+	private LineIndex lines;
+	private int lastEnd;
+	private boolean finished;
+	private int count;
+	
+	public TokenWindow(TokenScanner scanner) {
+		this(scanner, null);
+	}
+	
+	/**
+	 * @param scanner the scanner to read tokens from
+	 * @param symbols the table used to intern identifiers or {@code null}
+	 */
+	public TokenWindow(TokenScanner scanner, SymbolTable symbols) {
+		this.scanner = scanner;
+		this.symbols = symbols;
+		this.types = new int[CAPACITY];
+		this.starts = new int[CAPACITY];
+		this.ends = new int[CAPACITY];
+		this.values = new String[CAPACITY];
+		this.tokens = new Token[CAPACITY];
+	}
+	
+	@Override
+	public String getPath() {
+		return scanner.getPath();
+	}
+	
+	@Override
+	public boolean has(int index) {
+		while (index >= count) {
+			if (finished || !read()) {
+				return false;
+			}
+		}
+		
+		return index >= 0;
+	}
+	
+	private boolean read() {
+		if (!scanner.next()) {
+			finished = true;
+			return false;
+		}
+		
+		int slot = count & MASK;
+		types[slot] = scanner.getType().ordinal();
+		starts[slot] = scanner.getStart();
+		ends[slot] = scanner.getEnd();
+		values[slot] = null;
+		tokens[slot] = null;
+		lastEnd = scanner.getEnd();
+		count++;
+		return true;
+	}
+	
+	private int slot(int index) {
+		if (!has(index) || index < count - CAPACITY) {
+			throw new IndexOutOfBoundsException("Token " + index + " is outside the window [" + Math.max(0, count - CAPACITY) + ", " + count + ")");
+		}
+		
+		return index & MASK;
+	}
+	
+	@Override
+	public Type getType(int index) {
+		return TYPES[types[slot(index)]];
+	}
+	
+	@Override
+	public String getValue(int index) {
+		int slot = slot(index);
+		String value = values[slot];
+		if (value == null) {
+			if (symbols != null && types[slot] == Type.IDENTIFIER.ordinal()) {
+				value = symbols.intern(scanner.getText(), starts[slot], ends[slot]);
+			} else {
+				value = scanner.getText().subSequence(starts[slot], ends[slot]).toString();
+			}
+			
+			values[slot] = value;
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public Position getStartPosition(int index) {
+		return getLineIndex().getPosition(starts[slot(index)]);
+	}
+	
+	@Override
+	public Position getEndPosition(int index) {
+		return getLineIndex().getPosition(ends[slot(index)]);
+	}
+	
+	@Override
+	public Token getToken(int index) {
+		int slot = slot(index);
+		Token token = tokens[slot];
+		if (token == null) {
+			token = new Token(
+				getType(index),
+				getValue(index),
+				ISyntaxPos.of(getPath(), getLineIndex(), starts[slot], ends[slot])
+			);
+			tokens[slot] = token;
+		}
+		
+		return token;
+	}
+	
+	@Override
+	public CharSequence getText() {
+		return scanner.getText();
+	}
+	
+	/**
+	 * Returns the line index of the text, the index is created the first time this method is called
+	 */
+	@Override
+	public LineIndex getLineIndex() {
+		if (lines == null) {
+			lines = new LineIndex(scanner.getText());
+		}
+		
+		return lines;
+	}
+	
+	@Override
+	public Position getLastPosition() {
+		return getLineIndex().getPosition(lastEnd);
+	}
+}
@@ -82,6 +82,10 @@ public class Main {
 		LOGGER.info("Format       : {}", Objects.toString(config.getOutputFormat(), "<NONE>"));
 		LOGGER.info("Target       : {}", Objects.toString(config.getTargetFormat(), "<NONE>"));
 		LOGGER.info("UseCache     : {}", config.useCache() ? "True" : "False");
+		LOGGER.info("VerifyCache  : {}", config.verifyCache() ? "True" : "False");
+		LOGGER.info("Checksum     : {}", config.getChecksumType());
+		LOGGER.info("CacheArchive : {}", config.useCacheArchive() ? "True" : "False");
+		LOGGER.info("SharedCache  : {}", Objects.toString(config.getSharedCacheFolder(), "<NONE>"));
 		LOGGER.info("---------------------------------------------------------");
 		
 		boolean repl = false;
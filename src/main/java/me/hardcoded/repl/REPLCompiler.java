@@ -26,7 +26,7 @@ public class REPLCompiler {
 		// Repl
 		this.importedPaths = new HashSet<>();
 		this.file = new IntermediateFile();
-		this.generator = new IntermediateGenerator(file, new ExportMap());
+		this.generator = new IntermediateGenerator(file, new ExportMap(ampleConfig.getFileSources()));
 	}
 	
 	public void clear() {
@@ -1,17 +1,18 @@
 package me.hardcoded.utils;
 
 import me.hardcoded.compiler.context.AmpleConfig;
+import me.hardcoded.configuration.ChecksumType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.zip.CRC32C;
 
 /**
  * Cache class for ample resources
@@ -20,68 +21,98 @@ import java.util.Map;
  */
 public class AmpleCache {
 	private static final Logger LOGGER = LogManager.getLogger(AmpleCache.class);
-	private static final MessageDigest SHA_1_DIGEST;
 	
-	static {
-		MessageDigest shaDigest = null;
+	// Message digests are not thread safe so each thread gets its own instance
+	private static final ThreadLocal<MessageDigest> SHA_1_DIGEST = ThreadLocal.withInitial(() -> {
 		try {
-			shaDigest = MessageDigest.getInstance("SHA-1");
+			return MessageDigest.getInstance("SHA-1");
 		} catch (NoSuchAlgorithmException e) {
 			LOGGER.error("Failed to load SHA-1 digest", e);
 			System.exit(0);
+			return null;
 		}
-		
-		SHA_1_DIGEST = shaDigest;
-	}
+	});
+	
+	private static final ThreadLocal<CRC32C> CRC32C_CHECKSUM = ThreadLocal.withInitial(CRC32C::new);
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 	
 	/**
-	 * Returns the digest used for checksums
+	 * Returns the digest used for checksums by the current thread
 	 */
 	public static MessageDigest getChecksumDigest() {
-		return SHA_1_DIGEST;
+		return SHA_1_DIGEST.get();
 	}
 	
 	/**
-	 * Returns the file checksum using the specified message digest
+	 * Returns the SHA-1 checksum of a file
 	 *
 	 * @param file the file used to calculate the checksum
 	 */
 	public static String getFileChecksum(File file) throws IOException {
-		MessageDigest digest = getChecksumDigest();
-		
-		try (FileInputStream stream = new FileInputStream(file)) {
-			byte[] buffer = new byte[1024];
-			int readBytes;
-			
-			while ((readBytes = stream.read(buffer)) != -1) {
-				digest.update(buffer, 0, readBytes);
-			}
-			
-			StringBuilder sb = new StringBuilder();
-			for (byte b : digest.digest()) {
-				sb.append("%02x".formatted(b));
-			}
-			
-			return sb.toString();
-		}
+		return getFileChecksum(file, ChecksumType.SHA_1);
 	}
 	
 	/**
-	 * Returns the file checksum using the specified message digest
+	 * Returns the checksum of a file
+	 *
+	 * @param file the file used to calculate the checksum
+	 * @param type the checksum type
+	 */
+	public static String getFileChecksum(File file, ChecksumType type) throws IOException {
+		// The file is read instead of mapped because a mapping keeps the file locked on some platforms
+		return getDataChecksum(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), type);
+	}
+	
+	/**
+	 * Returns the SHA-1 checksum of the bytes
 	 *
 	 * @param bytes the bytes used to calculate the checksum
 	 */
 	public static String getDataChecksum(byte[] bytes) {
-		MessageDigest digest = getChecksumDigest();
-		
-		digest.update(bytes);
-		
-		StringBuilder sb = new StringBuilder();
-		for (byte b : digest.digest()) {
-			sb.append("%02x".formatted(b));
+		return getDataChecksum(ByteBuffer.wrap(bytes), ChecksumType.SHA_1);
+	}
+	
+	/**
+	 * Returns the SHA-1 checksum of the remaining bytes inside the buffer
+	 *
+	 * @param buffer the buffer used to calculate the checksum
+	 */
+	public static String getDataChecksum(ByteBuffer buffer) {
+		return getDataChecksum(buffer, ChecksumType.SHA_1);
+	}
+	
+	/**
+	 * Returns the checksum of the remaining bytes inside the buffer
+	 *
+	 * @param buffer the buffer used to calculate the checksum
+	 * @param type   the checksum type
+	 */
+	public static String getDataChecksum(ByteBuffer buffer, ChecksumType type) {
+		return switch (type) {
+			case SHA_1 -> {
+				MessageDigest digest = getChecksumDigest();
+				digest.update(buffer);
+				yield toHexString(digest.digest());
+			}
+			case CRC32C -> {
+				CRC32C checksum = CRC32C_CHECKSUM.get();
+				checksum.reset();
+				checksum.update(buffer);
+				
+				int value = (int) checksum.getValue();
+				yield toHexString(new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value });
+			}
+		};
+	}
+	
+	private static String toHexString(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 15];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 15];
 		}
 		
-		return sb.toString();
+		return new String(chars);
 	}
 	
 	/**
@@ -91,19 +122,23 @@ public class AmpleCache {
 	 * @param file        the file to resolve the cache path from
 	 */
 	public static String getCacheFileName(AmpleConfig ampleConfig, File file) {
-		Path relativePath = ampleConfig.getConfiguration()
-			.getWorkingDirectory().toPath().relativize(file.toPath());
-		
-		return "serial_" + relativePath.toString().replace("_", "__").replaceAll("[\\\\/]", "_") + ".serial";
+		return "serial_" + getRelativeName(ampleConfig, file) + ".serial";
 	}
 	
-	private static final Map<String, String> FILE_SOURCES = new HashMap<>();
-	
-	public static void putFileSource(File file, String content) {
-		FILE_SOURCES.put(file.getAbsolutePath(), content);
+	/**
+	 * Returns the cache path of the intermediate code of a file
+	 *
+	 * @param ampleConfig the ample config
+	 * @param file        the file to resolve the cache path from
+	 */
+	public static String getIntermediateCacheFileName(AmpleConfig ampleConfig, File file) {
+		return "inst_" + getRelativeName(ampleConfig, file) + ".serial";
 	}
 	
-	public static String getFileSource(File file) {
-		return FILE_SOURCES.get(file.getAbsolutePath());
+	private static String getRelativeName(AmpleConfig ampleConfig, File file) {
+		Path relativePath = ampleConfig.getConfiguration()
+			.getWorkingDirectory().toPath().relativize(file.toPath());
+		
+		return relativePath.toString().replace("_", "__").replaceAll("[\\\\/]", "_");
 	}
 }
@@ -0,0 +1,263 @@
+package me.hardcoded.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single file that contains all cache entries of an output folder.
+ *
+ * <p>The archive starts with an index of the name, offset and length of each entry followed
+ * by the data of all entries. The archive is opened once and entries are read from their offset
+ * into a new buffer, so no buffer refers to the file when it is replaced. Entries that are added
+ * are kept in memory until {@link #save()} writes a new archive.
+ *
+ * <p>Entries that were not read or added since the archive was opened are removed when the
+ * archive is saved.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author HardCoded
+ */
+public class CacheArchive implements Closeable {
+	private static final Logger LOGGER = LogManager.getLogger(CacheArchive.class);
+	private static final int MAGIC = 0x414d4346; // 'AMCF' A Cache File
+	
+	/**
+	 * The name of the archive file inside the output folder
+	 */
+	public static final String FILE_NAME = "cache.archive";
+	
+	private final File archiveFile;
+	private final Map<String, Slice> slices;
+	private final Map<String, byte[]> added;
+	private final Set<String> used;
+	private volatile FileChannel channel;
+	
+	private CacheArchive(File archiveFile) {
+		this.archiveFile = archiveFile;
+		this.slices = new LinkedHashMap<>();
+		this.added = new ConcurrentHashMap<>();
+		this.used = ConcurrentHashMap.newKeySet();
+	}
+	
+	/**
+	 * Open the archive of an output folder. If the archive could not be read an empty archive is returned
+	 *
+	 * @param outputFolder the output folder
+	 */
+	public static CacheArchive open(File outputFolder) {
+		CacheArchive archive = new CacheArchive(new File(outputFolder, FILE_NAME));
+		if (!archive.archiveFile.exists()) {
+			return archive;
+		}
+		
+		try {
+			archive.channel = FileChannel.open(archive.archiveFile.toPath(), StandardOpenOption.READ);
+			long archiveSize = archive.channel.size();
+			
+			// The stream is not closed because that would close the channel
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(archive.channel)));
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Wrong magic value");
+			}
+			
+			for (int i = 0, size = in.readInt(); i < size; i++) {
+				String name = in.readUTF();
+				int offset = in.readInt();
+				int length = in.readInt();
+				
+				if (offset < 0 || length < 0 || offset > archiveSize - length) {
+					throw new IOException("Entry '" + name + "' is outside the archive");
+				}
+				
+				archive.slices.put(name, new Slice(offset, length));
+			}
+		} catch (IOException e) {
+			try {
+				archive.close();
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			
+			LOGGER.warn("Failed to read cache archive '{}'", archive.archiveFile, e);
+			archive.slices.clear();
+		}
+		
+		return archive;
+	}
+	
+	/**
+	 * Returns the data of an entry or {@code null} if the archive does not contain the entry
+	 *
+	 * @param name the name of the entry
+	 * @throws IOException if the entry could not be read
+	 */
+	public ByteBuffer get(String name) throws IOException {
+		used.add(name);
+		
+		byte[] bytes = added.get(name);
+		if (bytes != null) {
+			return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		}
+		
+		Slice slice = slices.get(name);
+		if (slice == null) {
+			return null;
+		}
+		
+		FileChannel channel = this.channel;
+		if (channel == null) {
+			throw new IOException("The cache archive is closed");
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(slice.length());
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, slice.offset() + buffer.position()) < 0) {
+				throw new EOFException("Entry '" + name + "' is outside the archive");
+			}
+		}
+		
+		return buffer.flip();
+	}
+	
+	/**
+	 * Add or replace an entry. The entry is written the next time the archive is saved
+	 *
+	 * @param name  the name of the entry
+	 * @param bytes the data of the entry
+	 */
+	public void put(String name, byte[] bytes) {
+		added.put(name, bytes);
+	}
+	
+	/**
+	 * Write the archive if any entries were added or removed. The archive is closed after it has been saved
+	 *
+	 * @throws IOException if the archive could not be written
+	 */
+	public synchronized void save() throws IOException {
+		Map<String, byte[]> written = new LinkedHashMap<>(added);
+		
+		// Entries that were added replace the entries of the old archive
+		Map<String, Slice> kept = new LinkedHashMap<>();
+		for (Map.Entry<String, Slice> entry : slices.entrySet()) {
+			if (used.contains(entry.getKey()) && !written.containsKey(entry.getKey())) {
+				kept.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		if (written.isEmpty() && kept.size() == slices.size()) {
+			close();
+			return;
+		}
+		
+		Map<String, Integer> entries = new LinkedHashMap<>();
+		for (Map.Entry<String, Slice> entry : kept.entrySet()) {
+			entries.put(entry.getKey(), entry.getValue().length());
+		}
+		
+		for (Map.Entry<String, byte[]> entry : written.entrySet()) {
+			entries.put(entry.getKey(), entry.getValue().length);
+		}
+		
+		ByteArrayOutputStream bs = new ByteArrayOutputStream();
+		DataOutputStream index = new DataOutputStream(bs);
+		index.writeInt(MAGIC);
+		index.writeInt(entries.size());
+		
+		// The offsets are written after the size of the index is known
+		int headerSize = 8;
+		for (String name : entries.keySet()) {
+			headerSize += 2 + utfLength(name) + 8;
+		}
+		
+		int offset = headerSize;
+		for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+			int length = entry.getValue();
+			index.writeUTF(entry.getKey());
+			index.writeInt(offset);
+			index.writeInt(length);
+			offset += length;
+		}
+		
+		// Write to a temporary file because the kept entries are copied from the old archive
+		File tempFile = new File(archiveFile.getParentFile(), FILE_NAME + ".tmp");
+		try (FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(out, ByteBuffer.wrap(bs.toByteArray()));
+			for (Slice slice : kept.values()) {
+				long position = slice.offset();
+				long end = position + slice.length();
+				while (position < end) {
+					long transferred = channel.transferTo(position, end - position, out);
+					if (transferred <= 0) {
+						throw new EOFException("Cache archive '" + archiveFile + "' was truncated");
+					}
+					
+					position += transferred;
+				}
+			}
+			
+			for (byte[] bytes : written.values()) {
+				writeFully(out, ByteBuffer.wrap(bytes));
+			}
+		}
+		
+		// The old archive must be closed before it can be replaced on all platforms
+		close();
+		Files.move(tempFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		added.clear();
+	}
+	
+	/**
+	 * Close the file of the archive. Entries of the archive can not be read after the archive has been closed
+	 *
+	 * @throws IOException if the archive could not be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+	
+	/**
+	 * Returns the amount of bytes {@link DataOutputStream#writeUTF(String)} uses for the characters of a string
+	 */
+	private static int utfLength(String string) {
+		int length = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c >= 0x0001 && c <= 0x007f) {
+				length += 1;
+			} else if (c <= 0x07ff) {
+				length += 2;
+			} else {
+				length += 3;
+			}
+		}
+		
+		return length;
+	}
+	
+	private record Slice(int offset, int length) {
+	}
+}
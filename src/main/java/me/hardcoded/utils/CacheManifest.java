@@ -0,0 +1,185 @@
+package me.hardcoded.utils;
+
+import me.hardcoded.configuration.ChecksumType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A manifest of the size, modification time and checksum of source files.
+ *
+ * <p>If the size and modification time of a file did not change since it was recorded the
+ * checksum is taken from the manifest instead of hashing the whole file.
+ *
+ * <p>A file that was modified in the same timestamp tick as the manifest was written could have
+ * changed without changing its size or modification time. Entries that are not strictly older
+ * than the manifest are therefore always hashed again.
+ *
+ * <p>Only the entries of files that were used since the manifest was loaded are saved.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author HardCoded
+ */
+public class CacheManifest {
+	private static final Logger LOGGER = LogManager.getLogger(CacheManifest.class);
+	private static final int MAGIC = 0x414d4d46; // 'AMMF' A Manifest File
+	
+	/**
+	 * The name of the manifest file inside the output folder
+	 */
+	public static final String FILE_NAME = "cache.manifest";
+	
+	private final File manifestFile;
+	private final ChecksumType checksumType;
+	private final Map<String, Entry> entries;
+	private final Set<String> used;
+	private volatile boolean modified;
+	
+	// The modification time of the manifest when it was loaded
+	private long timestamp;
+	
+	private CacheManifest(File manifestFile, ChecksumType checksumType) {
+		this.manifestFile = manifestFile;
+		this.checksumType = checksumType;
+		this.entries = new ConcurrentHashMap<>();
+		this.used = ConcurrentHashMap.newKeySet();
+	}
+	
+	/**
+	 * Load the manifest of an output folder. If the manifest could not be read or was created
+	 * with a different checksum type an empty manifest is returned
+	 *
+	 * @param outputFolder the output folder
+	 * @param checksumType the checksum type of the manifest
+	 */
+	public static CacheManifest load(File outputFolder, ChecksumType checksumType) {
+		CacheManifest manifest = new CacheManifest(new File(outputFolder, FILE_NAME), checksumType);
+		if (!manifest.manifestFile.exists()) {
+			return manifest;
+		}
+		
+		try {
+			manifest.timestamp = Files.getLastModifiedTime(manifest.manifestFile.toPath()).toMillis();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to read cache manifest '{}'", manifest.manifestFile, e);
+			return manifest;
+		}
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest.manifestFile)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Wrong magic value");
+			}
+			
+			if (!in.readUTF().equals(checksumType.name())) {
+				return manifest;
+			}
+			
+			for (int i = 0, size = in.readInt(); i < size; i++) {
+				String path = in.readUTF();
+				manifest.entries.put(path, new Entry(in.readLong(), in.readLong(), in.readUTF()));
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Failed to read cache manifest '{}'", manifest.manifestFile, e);
+			manifest.entries.clear();
+		}
+		
+		return manifest;
+	}
+	
+	/**
+	 * Write the manifest if it has been modified. Entries of files that were not used are removed
+	 *
+	 * @throws IOException if the manifest could not be written
+	 */
+	public void save() throws IOException {
+		// Files that were deleted or renamed are not used by the compilation
+		if (entries.keySet().retainAll(used)) {
+			modified = true;
+		}
+		
+		if (!modified) {
+			return;
+		}
+		
+		// Write to a temporary file so a manifest that was not fully written is never read
+		File tempFile = new File(manifestFile.getParentFile(), FILE_NAME + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			Map<String, Entry> copy = Map.copyOf(entries);
+			out.writeInt(MAGIC);
+			out.writeUTF(checksumType.name());
+			out.writeInt(copy.size());
+			for (Map.Entry<String, Entry> entry : copy.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue().size());
+				out.writeLong(entry.getValue().lastModified());
+				out.writeUTF(entry.getValue().checksum());
+			}
+		}
+		
+		Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		modified = false;
+	}
+	
+	/**
+	 * Returns the checksum of a file. The file is only hashed if it changed since it was recorded
+	 *
+	 * @param file the file
+	 * @throws IOException if the file could not be read
+	 */
+	public String getFileChecksum(File file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		used.add(file.getAbsolutePath());
+		Entry entry = entries.get(file.getAbsolutePath());
+		if (entry != null && entry.matches(attributes)) {
+			if (entry.lastModified() < timestamp) {
+				return entry.checksum();
+			}
+			
+			// Write the manifest again so the entry is older than the next manifest
+			modified = true;
+		}
+		
+		String checksum = AmpleCache.getFileChecksum(file, checksumType);
+		put(file, attributes, checksum);
+		return checksum;
+	}
+	
+	/**
+	 * Returns the attributes of a file that should be recorded with {@link #put} after the file has been read
+	 *
+	 * @param file the file
+	 * @throws IOException if the attributes could not be read
+	 */
+	public BasicFileAttributes readAttributes(File file) throws IOException {
+		return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+	}
+	
+	/**
+	 * Record the checksum of a file
+	 *
+	 * @param file       the file
+	 * @param attributes the attributes of the file before it was read
+	 * @param checksum   the checksum of the file
+	 */
+	public void put(File file, BasicFileAttributes attributes, String checksum) {
+		Entry entry = new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), checksum);
+		used.add(file.getAbsolutePath());
+		if (!entry.equals(entries.put(file.getAbsolutePath(), entry))) {
+			modified = true;
+		}
+	}
+	
+	private record Entry(long size, long lastModified, String checksum) {
+		boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+		}
+	}
+}
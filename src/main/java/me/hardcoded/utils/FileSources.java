@@ -0,0 +1,83 @@
+package me.hardcoded.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The sources of the files of a compilation that are used to show the line of an error.
+ *
+ * <p>The least recently used sources are removed when the sources are longer than the limit.
+ * Sources that are not kept in memory are read from their file again.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author HardCoded
+ */
+public class FileSources {
+	/**
+	 * The maximum amount of characters of file sources that are kept in memory
+	 */
+	private static final long MAX_LENGTH = 8 * 1024 * 1024;
+	
+	private final Map<String, String> sources;
+	private long length;
+	
+	public FileSources() {
+		this.sources = new LinkedHashMap<>(16, 0.75f, true);
+	}
+	
+	/**
+	 * Keep the source of a file in memory
+	 *
+	 * @param file    the file
+	 * @param content the source of the file
+	 */
+	public synchronized void put(File file, String content) {
+		String previous = sources.put(file.getAbsolutePath(), content);
+		length += content.length() - (previous == null ? 0 : previous.length());
+		
+		Iterator<String> iterator = sources.values().iterator();
+		while (length > MAX_LENGTH && iterator.hasNext()) {
+			length -= iterator.next().length();
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * Returns the source of a file. If the source is not kept in memory the file is read again.
+	 * Returns {@code null} if the source is not available
+	 *
+	 * @param file the file
+	 */
+	public String get(File file) {
+		synchronized (this) {
+			String content = sources.get(file.getAbsolutePath());
+			if (content != null) {
+				return content;
+			}
+		}
+		
+		return readFile(file);
+	}
+	
+	/**
+	 * Returns the content of a file or {@code null} if the file could not be read
+	 *
+	 * @param file the file
+	 */
+	public static String readFile(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		
+		try {
+			return Files.readString(file.toPath());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
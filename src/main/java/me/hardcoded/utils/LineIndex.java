@@ -0,0 +1,135 @@
+package me.hardcoded.utils;
+
+import java.util.Arrays;
+
+/**
+ * An index of the offsets where each line of a text starts.
+ *
+ * <p>Lines are separated by {@code '\n'} and a tab counts as four columns,
+ * this matches the positions created by the lexer. The index only stores the
+ * offsets of line breaks and tabs so positions that keep a reference to it
+ * do not keep the text alive.
+ *
+ * @author HardCoded
+ */
+public class LineIndex {
+	private final int[] lineStarts;
+	private final int lineCount;
+	private final int[] tabs;
+	private final int tabCount;
+	
+	public LineIndex(CharSequence text) {
+		int[] starts = new int[16];
+		int count = 1;
+		int[] tabOffsets = new int[16];
+		int tabs = 0;
+		
+		if (text instanceof String string) {
+			// String.indexOf is much faster than reading each character
+			for (int i = string.indexOf('\n'); i >= 0; i = string.indexOf('\n', i + 1)) {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+				}
+				
+				starts[count++] = i + 1;
+			}
+			
+			for (int i = string.indexOf('\t'); i >= 0; i = string.indexOf('\t', i + 1)) {
+				if (tabs == tabOffsets.length) {
+					tabOffsets = Arrays.copyOf(tabOffsets, tabs * 2);
+				}
+				
+				tabOffsets[tabs++] = i;
+			}
+		} else {
+			for (int i = 0, length = text.length(); i < length; i++) {
+				char c = text.charAt(i);
+				if (c == '\n') {
+					if (count == starts.length) {
+						starts = Arrays.copyOf(starts, count * 2);
+					}
+					
+					starts[count++] = i + 1;
+				} else if (c == '\t') {
+					if (tabs == tabOffsets.length) {
+						tabOffsets = Arrays.copyOf(tabOffsets, tabs * 2);
+					}
+					
+					tabOffsets[tabs++] = i;
+				}
+			}
+		}
+		
+		this.lineStarts = Arrays.copyOf(starts, count);
+		this.lineCount = count;
+		this.tabs = Arrays.copyOf(tabOffsets, tabs);
+		this.tabCount = tabs;
+	}
+	
+	public int getLineCount() {
+		return lineCount;
+	}
+	
+	/**
+	 * Returns the zero based line of the offset
+	 */
+	public int getLine(int offset) {
+		int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+		return index < 0 ? (-index - 2) : index;
+	}
+	
+	/**
+	 * Returns the zero based column of the offset
+	 */
+	public int getColumn(int offset) {
+		return getColumn(getLine(offset), offset);
+	}
+	
+	private int getColumn(int line, int offset) {
+		// Each tab between the start of the line and the offset adds three columns
+		int tabsBefore = countTabs(offset) - countTabs(lineStarts[line]);
+		return offset - lineStarts[line] + tabsBefore * 3;
+	}
+	
+	/**
+	 * Returns the number of tabs before the offset
+	 */
+	private int countTabs(int offset) {
+		int index = Arrays.binarySearch(tabs, 0, tabCount, offset);
+		return index < 0 ? (-index - 1) : index;
+	}
+	
+	public Position getPosition(int offset) {
+		int line = getLine(offset);
+		return new Position(getColumn(line, offset), line);
+	}
+	
+	public int getLineStart(int line) {
+		return lineStarts[line];
+	}
+	
+	/**
+	 * Returns the offset of the end of the line excluding the line separator
+	 *
+	 * @param text the text this index was created from
+	 * @param line the zero based line
+	 */
+	public int getLineEnd(CharSequence text, int line) {
+		int end = (line + 1 < lineCount) ? lineStarts[line + 1] - 1 : text.length();
+		if (end > lineStarts[line] && text.charAt(end - 1) == '\r') {
+			end--;
+		}
+		
+		return end;
+	}
+	
+	/**
+	 * Returns the content of the line excluding the line separator
+	 *
+	 * @param text the text this index was created from
+	 * @param line the zero based line
+	 */
+	public String getLineContent(CharSequence text, int line) {
+		return text.subSequence(lineStarts[line], getLineEnd(text, line)).toString();
+	}
+}
@@ -0,0 +1,57 @@
+package me.hardcoded.utils;
+
+import me.hardcoded.compiler.impl.ISyntaxPos;
+
+import java.util.Objects;
+
+/**
+ * A syntax position that stores offsets and computes the line and column when they are requested.
+ *
+ * @author HardCoded
+ */
+public class OffsetSyntaxImpl implements ISyntaxPos {
+	private final LineIndex lines;
+	private final String path;
+	private final int startOffset;
+	private final int endOffset;
+	private Position start;
+	private Position end;
+	
+	public OffsetSyntaxImpl(String path, LineIndex lines, int startOffset, int endOffset) {
+		this.path = Objects.requireNonNull(path);
+		this.lines = lines;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+	}
+	
+	public int getStartOffset() {
+		return startOffset;
+	}
+	
+	public int getEndOffset() {
+		return endOffset;
+	}
+	
+	@Override
+	public Position getStartPosition() {
+		if (start == null) {
+			start = lines.getPosition(startOffset);
+		}
+		
+		return start;
+	}
+	
+	@Override
+	public Position getEndPosition() {
+		if (end == null) {
+			end = lines.getPosition(endOffset);
+		}
+		
+		return end;
+	}
+	
+	@Override
+	public String getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,186 @@
+package me.hardcoded.utils;
+
+import me.hardcoded.configuration.ChecksumType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache directory that can be shared between projects.
+ *
+ * <p>Entries are named after the SHA-1 of the source file they were created from so
+ * identical files in different projects use the same entry. The SHA-1 is used even if the
+ * projects use a shorter checksum because a collision would load the tree of another file.
+ * Entries are written to a
+ * temporary file and moved into place so a compiler never reads a partially written entry.
+ * When the directory grows larger than its limit the least recently used entries are removed.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author HardCoded
+ */
+public class SharedCache {
+	private static final String ENTRY_EXTENSION = ".serial";
+	private static final String TEMP_EXTENSION = ".tmp";
+	
+	private final Path directory;
+	private final ChecksumType checksumType;
+	private final String version;
+	private final long maxSize;
+	
+	private SharedCache(Path directory, ChecksumType checksumType, String version, long maxSize) {
+		this.directory = directory;
+		this.checksumType = checksumType;
+		this.version = version;
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Open a shared cache directory. The directory is created if it does not exist
+	 *
+	 * @param directory    the shared cache directory
+	 * @param checksumType the checksum type of the source checksums
+	 * @param version      the version of the compiler, entries of other versions are never used
+	 * @param maxSize      the amount of bytes the entries may use before they are evicted
+	 * @throws IOException if the directory could not be created
+	 */
+	public static SharedCache open(File directory, ChecksumType checksumType, String version, long maxSize) throws IOException {
+		Path path = directory.toPath();
+		Files.createDirectories(path);
+		return new SharedCache(path, checksumType, version, maxSize);
+	}
+	
+	/**
+	 * Returns the data of an entry or {@code null} if the cache does not contain the entry
+	 *
+	 * @param file     the source file
+	 * @param checksum the checksum of the source file
+	 * @throws IOException if the source file or the entry could not be read
+	 */
+	public ByteBuffer get(File file, String checksum) throws IOException {
+		String key = checksumType == ChecksumType.SHA_1 ? checksum : AmpleCache.getFileChecksum(file, ChecksumType.SHA_1);
+		Path entry = getEntryPath(key);
+		
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(entry);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		
+		try {
+			// The modification time is used to find the least recently used entries
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// Another compiler could have evicted the entry
+		}
+		
+		return ByteBuffer.wrap(bytes);
+	}
+	
+	/**
+	 * Add or replace an entry. Nothing is written if the source file no longer matches the checksum
+	 *
+	 * @param file     the source file
+	 * @param checksum the checksum of the source file when the entry was created
+	 * @param bytes    the data of the entry
+	 * @throws IOException if the source file could not be read or the entry could not be written
+	 */
+	public void put(File file, String checksum, byte[] bytes) throws IOException {
+		String key = checksum;
+		if (checksumType != ChecksumType.SHA_1) {
+			ByteBuffer source = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (!checksum.equals(AmpleCache.getDataChecksum(source.duplicate(), checksumType))) {
+				return;
+			}
+			
+			key = AmpleCache.getDataChecksum(source);
+		}
+		
+		Path entry = getEntryPath(key);
+		Path tempFile = Files.createTempFile(directory, "entry", TEMP_EXTENSION);
+		
+		try {
+			Files.write(tempFile, bytes);
+			
+			try {
+				Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	/**
+	 * Remove the least recently used entries until the entries fit inside the size limit.
+	 * Temporary files that were left by compilers that did not finish are also removed
+	 *
+	 * @throws IOException if the directory could not be listed
+	 */
+	public void evict() throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		long totalSize = 0;
+		long staleTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+		
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				
+				BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				} catch (NoSuchFileException e) {
+					continue;
+				}
+				
+				if (name.endsWith(TEMP_EXTENSION)) {
+					if (attributes.lastModifiedTime().toMillis() < staleTime) {
+						Files.deleteIfExists(path);
+					}
+				} else if (name.endsWith(ENTRY_EXTENSION)) {
+					entries.add(new Entry(path, attributes.lastModifiedTime(), attributes.size()));
+					totalSize += attributes.size();
+				}
+			}
+		}
+		
+		if (totalSize <= maxSize) {
+			return;
+		}
+		
+		entries.sort(Comparator.comparing(Entry::lastUsed));
+		for (Entry entry : entries) {
+			if (totalSize <= maxSize) {
+				break;
+			}
+			
+			Files.deleteIfExists(entry.path());
+			totalSize -= entry.size();
+		}
+	}
+	
+	private Path getEntryPath(String sha1) {
+		// The version and checksum type are part of the name because the entry contains the checksum
+		String key = version + ':' + checksumType + ':' + sha1;
+		return directory.resolve(AmpleCache.getDataChecksum(ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8))) + ENTRY_EXTENSION);
+	}
+	
+	private record Entry(Path path, FileTime lastUsed, long size) {
+	}
+}
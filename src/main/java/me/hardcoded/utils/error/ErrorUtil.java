@@ -1,14 +1,13 @@
 package me.hardcoded.utils.error;
 
 import me.hardcoded.compiler.impl.ISyntaxPos;
-import me.hardcoded.utils.AmpleCache;
+import me.hardcoded.utils.FileSources;
+import me.hardcoded.utils.LineIndex;
 import me.hardcoded.utils.Position;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
 
 public class ErrorUtil {
 	private static String padNumber(int number, int padding) {
@@ -29,6 +28,18 @@ public class ErrorUtil {
 	}
 	
 	public static String createError(ISyntaxPos error, String content, String message) {
+		return createError(error, content, content == null ? null : new LineIndex(content), message);
+	}
+	
+	/**
+	 * Create an error message that shows the line of the error.
+	 *
+	 * @param error   the position of the error
+	 * @param content the source or {@code null} if the source is not available
+	 * @param lines   the line index of the source or {@code null} if the source is not available
+	 * @param message the message
+	 */
+	public static String createError(ISyntaxPos error, CharSequence content, LineIndex lines, String message) {
 		int errorLine = error.getEndPosition().line() + 1;
 		int errorStart = error.getStartPosition().column();
 		int errorEnd = error.getEndPosition().column();
@@ -41,9 +52,8 @@ public class ErrorUtil {
 		
 		StringBuilder sb = new StringBuilder();
 		
-		if (content != null) {
-			List<String> lines = content.lines().toList();
-			String errString = lines.get(errorLine - 1);
+		if (content != null && lines != null) {
+			String errString = lines.getLineContent(content, errorLine - 1);
 			
 			sb.append('\n');
 			sb.append("%s | %s\n".formatted(numFormat.formatted(errorLine), errString));
@@ -59,27 +69,25 @@ public class ErrorUtil {
 	
 	@Deprecated
 	public static String createFullError(ISyntaxPos error, String message) {
-		try {
-			File file = Path.of(error.getPath()).toFile();
-			
-			String content = AmpleCache.getFileSource(file);
-			if (content == null && file.exists()) {
-				// Bad
-				content = Files.readString(file.toPath());
-			}
-			
-			return createFullError(error, content, message);
-		} catch (IOException e) {
-			return null;
-		}
+		String content = FileSources.readFile(Path.of(error.getPath()).toFile());
+		return createFullError(error, content, message);
+	}
+	
+	public static String createFullError(ISyntaxPos error, FileSources sources, String message) {
+		String content = sources.get(Path.of(error.getPath()).toFile());
+		return createFullError(error, content, message);
 	}
 	
 	public static String createFullError(ISyntaxPos error, String content, String message) {
+		return createFullError(error, content, content == null ? null : new LineIndex(content), message);
+	}
+	
+	public static String createFullError(ISyntaxPos error, CharSequence content, LineIndex lines, String message) {
 		StringBuilder sb = new StringBuilder();
 		
 		Position position = error.getStartPosition();
 		sb.append("(").append(error.getPath()).append(") (line: ").append(position.line() + 1).append(", column: ").append(position.column() + 1).append("): ")
-			.append(createError(error, content, message));
+			.append(createError(error, content, lines, message));
 		
 		return sb.toString();
 	}
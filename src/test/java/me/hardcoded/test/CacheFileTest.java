@@ -0,0 +1,98 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.AmpleCompiler;
+import me.hardcoded.compiler.context.AmpleConfig;
+import me.hardcoded.compiler.parser.serial.LinkableDeserializer;
+import me.hardcoded.configuration.CompilerConfiguration;
+import me.hardcoded.utils.AmpleCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class CacheFileTest {
+	private static final Logger LOGGER = LogManager.getLogger(CacheFileTest.class);
+	
+	private static final String SOURCE = """
+		@link "std.amp";
+
+		fn square (i64: value) : i64 {
+			i64: result = value * value;
+			ret result;
+		}
+
+		fn main () : i32 {
+			std::printf("%p\\n", square(12l));
+			ret 0;
+		}
+		""";
+	
+	@Test
+	public void testTruncatedBody() throws Exception {
+		// A cache file that was not fully written ends inside the bodies of the functions
+		assertCorruptedCacheIsParsed(bytes -> Arrays.copyOf(bytes, bytes.length / 2));
+	}
+	
+	@Test
+	public void testModifiedBody() throws Exception {
+		// A cache file with the right length but the wrong content
+		assertCorruptedCacheIsParsed(bytes -> {
+			byte[] result = bytes.clone();
+			result[result.length / 2] ^= 0x55;
+			return result;
+		});
+	}
+	
+	private static void assertCorruptedCacheIsParsed(UnaryOperator<byte[]> corruption) throws Exception {
+		Path dir = Files.createTempDirectory("ample").toRealPath();
+		try {
+			Files.copy(new File(CompileHelper.PROJECT, "std.amp").toPath(), dir.resolve("std.amp"));
+			Files.writeString(dir.resolve("main.amp"), SOURCE);
+			
+			AmpleConfig config = createConfig(dir);
+			new AmpleCompiler(config).compile();
+			String expected = Files.readString(dir.resolve("compile"));
+			
+			Path cacheFile = dir.resolve(AmpleCache.getCacheFileName(config, dir.resolve("main.amp").toFile()));
+			byte[] bytes = Files.readAllBytes(cacheFile);
+			assertNotNull(LinkableDeserializer.deserializeLinkable(bytes));
+			
+			byte[] corrupted = corruption.apply(bytes);
+			Files.write(cacheFile, corrupted);
+			assertNull(LinkableDeserializer.deserializeLinkable(corrupted));
+			
+			// The file is parsed again and its cache file is replaced
+			new AmpleCompiler(createConfig(dir)).compile();
+			assertEquals(expected, Files.readString(dir.resolve("compile")));
+			assertArrayEquals(bytes, Files.readAllBytes(cacheFile));
+		} finally {
+			try (Stream<Path> stream = Files.walk(dir)) {
+				for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+					Files.deleteIfExists(path);
+				}
+			}
+		}
+	}
+	
+	private static AmpleConfig createConfig(Path dir) {
+		CompilerConfiguration config = CompilerConfiguration.parseArgs(LOGGER, new String[] {
+			"-w", dir.toString(),
+			"-i", dir.resolve("main.amp").toString(),
+			"-o", dir.toString(),
+			"-t", "ASSEMBLER",
+			"-f", "ASM",
+			"--use-cache", "true"
+		});
+		
+		return new AmpleConfig(config);
+	}
+}
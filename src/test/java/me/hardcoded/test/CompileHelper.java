@@ -0,0 +1,81 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.context.AmpleConfig;
+import me.hardcoded.compiler.intermediate.inst.IntermediateFile;
+import me.hardcoded.compiler.parser.AmpleParser;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.configuration.CompilerConfiguration;
+import me.hardcoded.interpreter.AmpleRunner;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+public class CompileHelper {
+	private static final Logger LOGGER = LogManager.getLogger(CompileHelper.class);
+	
+	/**
+	 * The bundled sample project
+	 */
+	public static final File PROJECT = new File("src/main/resources/project/src").getAbsoluteFile();
+	
+	public static AmpleConfig createConfig(File workingDir) {
+		CompilerConfiguration config = CompilerConfiguration.parseArgs(LOGGER, new String[] {
+			"-w", workingDir.getAbsolutePath(),
+			"-o", workingDir.getAbsolutePath(),
+			"--use-cache", "false"
+		});
+		
+		return new AmpleConfig(config);
+	}
+	
+	/**
+	 * Parse a file and all files it imports. The input file is the first object of the list
+	 */
+	public static List<LinkableObject> parse(AmpleConfig config, File inputFile) throws Exception {
+		File workingDir = config.getConfiguration().getWorkingDirectory();
+		List<LinkableObject> list = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+		LinkedList<File> queue = new LinkedList<>();
+		queue.add(inputFile.getCanonicalFile());
+		
+		while (!queue.isEmpty()) {
+			File file = queue.poll();
+			if (!visited.add(file.getAbsolutePath())) {
+				continue;
+			}
+			
+			LinkableObject obj = new AmpleParser(config).fromFile(file);
+			list.add(obj);
+			
+			for (String importPath : obj.getImports()) {
+				queue.add(new File(workingDir, importPath).getCanonicalFile());
+			}
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Run the intermediate code with the interpreter and return what it printed
+	 */
+	public static String run(IntermediateFile file) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream previous = System.out;
+		System.setOut(new PrintStream(output, true));
+		try {
+			new AmpleRunner().run(file);
+		} finally {
+			System.setOut(previous);
+		}
+		
+		return output.toString();
+	}
+}
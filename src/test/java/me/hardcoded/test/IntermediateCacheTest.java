@@ -0,0 +1,146 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.context.AmpleConfig;
+import me.hardcoded.compiler.intermediate.AmpleLinker;
+import me.hardcoded.compiler.intermediate.IntermediateCache;
+import me.hardcoded.compiler.intermediate.inst.Inst;
+import me.hardcoded.compiler.intermediate.inst.IntermediateFile;
+import me.hardcoded.compiler.intermediate.inst.Procedure;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.compiler.parser.serial.LinkableDeserializer;
+import me.hardcoded.compiler.parser.serial.LinkableSerializer;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IntermediateCacheTest {
+	@Test
+	public void testCachedCode() throws Exception {
+		AmpleConfig config = CompileHelper.createConfig(CompileHelper.PROJECT);
+		List<LinkableObject> list = CompileHelper.parse(config, new File(CompileHelper.PROJECT, "test.amp"));
+		String expected = printFile(new AmpleLinker(config).link(list));
+		
+		MemoryCache cache = new MemoryCache();
+		assertEquals(expected, printFile(new AmpleLinker(config).link(list, cache)));
+		assertEquals(list.size(), cache.entries.size());
+		assertEquals(0, cache.hits.get());
+		
+		// The code of every object is read from the cache
+		IntermediateFile cached = new AmpleLinker(config).link(list, cache);
+		assertEquals(expected, printFile(cached));
+		assertEquals(list.size(), cache.hits.get());
+		assertEquals(CompileHelper.run(new AmpleLinker(config).link(list)), CompileHelper.run(cached));
+		
+		// Objects read from the cache files of the parser use the same cached code
+		List<LinkableObject> loaded = list.stream()
+			.map(obj -> LinkableDeserializer.deserializeLinkable(LinkableSerializer.serializeLinkable(obj)))
+			.toList();
+		assertEquals(expected, printFile(new AmpleLinker(config).link(loaded, cache)));
+		assertEquals(list.size() * 2, cache.hits.get());
+	}
+	
+	@Test
+	public void testTruncatedCode() throws Exception {
+		AmpleConfig config = CompileHelper.createConfig(CompileHelper.PROJECT);
+		List<LinkableObject> list = CompileHelper.parse(config, new File(CompileHelper.PROJECT, "test.amp"));
+		String expected = printFile(new AmpleLinker(config).link(list));
+		
+		MemoryCache cache = new MemoryCache();
+		new AmpleLinker(config).link(list, cache);
+		cache.entries.replaceAll((file, bytes) -> Arrays.copyOf(bytes, bytes.length / 2));
+		
+		// Code that can not be read is generated again
+		assertEquals(expected, printFile(new AmpleLinker(config).link(list, cache)));
+	}
+	
+	@Test
+	public void testChangedDependency() throws Exception {
+		Path dir = Files.createTempDirectory("ample").toRealPath();
+		Path lib = dir.resolve("lib.amp");
+		Path main = dir.resolve("main.amp");
+		try {
+			Files.writeString(main, """
+				@link "lib.amp";
+
+				fn main () : i32 {
+					i64: result = cast<i64>(value());
+					ret 0;
+				}
+				""");
+			
+			Files.writeString(lib, """
+				fn (export) value () : i64 {
+					ret 1l;
+				}
+				""");
+			
+			AmpleConfig config = CompileHelper.createConfig(dir.toFile());
+			MemoryCache cache = new MemoryCache();
+			List<LinkableObject> list = CompileHelper.parse(config, main.toFile());
+			new AmpleLinker(config).link(list, cache);
+			byte[] mainCode = cache.entries.get(main.toFile());
+			assertNotNull(mainCode);
+			
+			// Only the exported function changes, the source of the main file does not
+			Files.writeString(lib, """
+				fn (export) value () : i32 {
+					ret 1;
+				}
+				""");
+			
+			list = CompileHelper.parse(config, main.toFile());
+			IntermediateFile file = new AmpleLinker(config).link(list, cache);
+			assertEquals(printFile(new AmpleLinker(config).link(list)), printFile(file));
+			
+			// The code of the main file was generated again and replaced in the cache
+			assertFalse(Arrays.equals(mainCode, cache.entries.get(main.toFile())));
+		} finally {
+			Files.deleteIfExists(main);
+			Files.deleteIfExists(lib);
+			Files.deleteIfExists(dir);
+		}
+	}
+	
+	private static String printFile(IntermediateFile file) {
+		StringBuilder sb = new StringBuilder();
+		for (Procedure proc : file.getProcedures()) {
+			sb.append(proc.getType()).append(' ').append(proc).append('\n');
+			for (Inst inst : proc.getInstructions()) {
+				sb.append("    ").append(inst).append('\n');
+			}
+		}
+		
+		return sb.toString();
+	}
+	
+	private static class MemoryCache implements IntermediateCache {
+		final Map<File, byte[]> entries = new ConcurrentHashMap<>();
+		final AtomicInteger hits = new AtomicInteger();
+		
+		@Override
+		public ByteBuffer read(File file) {
+			byte[] bytes = entries.get(file);
+			if (bytes == null) {
+				return null;
+			}
+			
+			hits.incrementAndGet();
+			return ByteBuffer.wrap(bytes);
+		}
+		
+		@Override
+		public void write(File file, byte[] bytes) {
+			entries.put(file, bytes);
+		}
+	}
+}
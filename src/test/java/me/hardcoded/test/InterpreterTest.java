@@ -0,0 +1,217 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.context.AmpleConfig;
+import me.hardcoded.compiler.intermediate.AmpleLinker;
+import me.hardcoded.compiler.intermediate.inst.*;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.compiler.parser.type.Namespace;
+import me.hardcoded.compiler.parser.type.Primitives;
+import me.hardcoded.compiler.parser.type.Reference;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InterpreterTest {
+	@Test
+	public void testRecursionWithStackAlloc() throws Exception {
+		// Stack memory of a call must not be changed by the calls it makes
+		String output = run("""
+			@link "std.amp";
+
+			fn sum (i64: n) : i64 {
+				if (n == 0l) {
+					ret 0l;
+				}
+
+				u8[]: buffer = stack_alloc<u8, 8>("........");
+				buffer[0] = cast<u8>(n);
+				i64: rest = sum(n - 1l);
+				i64: result = cast<i64>(buffer[0]) + rest;
+				ret result;
+			}
+
+			fn fill (u8[]: dest, i64: depth) {
+				if (depth == 0l) {
+					ret;
+				}
+
+				u8[]: local = stack_alloc<u8, 4>("....");
+				local[0] = cast<u8>(48l + depth);
+				fill(dest, depth - 1l);
+				dest[depth - 1l] = local[0];
+				ret;
+			}
+
+			fn main () : i32 {
+				u8[]: text = stack_alloc<u8, 6>();
+				text[5] = cast<u8>(0);
+				fill(text, 5l);
+				std::printf("sum=%p text=%s\\n", sum(100l), text);
+				ret 0;
+			}
+			""");
+		
+		assertEquals("sum=00000000000013ba text=12345\n", output);
+	}
+	
+	@Test
+	public void testVarargs() throws Exception {
+		String output = run("""
+			@link "std.amp";
+
+			fn total (i64: count, ...[]: args) : i64 {
+				u8[]: ptr = cast<u8[]>(args);
+				i64: result = 0l;
+				for (i64: i = 0l; i < count; i = i + 1l) {
+					result = result + cast<i64>(cast<u64[]>(ptr)[0]);
+					ptr = cast<u8[]>(cast<u64>(ptr) + 8ul);
+				}
+
+				ret result;
+			}
+
+			fn main () : i32 {
+				std::printf("%s-%s %p %p\\n", "a", "bc", 255l, total(3l, 10l, 20l, 30l));
+				std::printf("%p\\n", total(0l));
+				std::printf("none\\n");
+				ret 0;
+			}
+			""");
+		
+		assertEquals("a-bc 00000000000000ff 000000000000003c\n0000000000000000\nnone\n", output);
+	}
+	
+	@Test
+	public void testPointerRoundTrip() throws Exception {
+		// Pointers converted to numbers and back must still point to the same memory
+		String output = run("""
+			@link "std.amp";
+
+			fn main () : i32 {
+				u8[]: text = "abcdef";
+				u64: address = cast<u64>(text);
+				u8[]: moved = cast<u8[]>(address + 2ul);
+				std::print(moved);
+				std::print("\\n");
+
+				u8[]: memory = stack_alloc<u8, 16>();
+				u64[]: numbers = cast<u64[]>(memory);
+				numbers[0] = address;
+				u64[]: second = cast<u64[]>(cast<u64>(memory) + 8ul);
+				second[0] = 0x1122334455667788ul;
+				u8[]: restored = cast<u8[]>(numbers[0]);
+				std::printf("%s %p %p\\n", restored, second[0], cast<u64>(memory[8]));
+				ret 0;
+			}
+			""");
+		
+		assertEquals("cdef\nabcdef 1122334455667788 0000000000000088\n", output);
+	}
+	
+	@Test
+	public void testStringOperands() throws Exception {
+		// Strings are released with the stack of the call unless they are returned
+		String output = run("""
+			@link "std.amp";
+
+			fn name (i64: index) : u8[] {
+				if (index == 0l) {
+					ret "zero";
+				}
+
+				std::print("other ");
+				ret "one";
+			}
+
+			fn main () : i32 {
+				u8[]: first = name(0l);
+				u8[]: second = name(1l);
+				std::printf("%s %s\\n", first, second);
+				ret 0;
+			}
+			""");
+		
+		assertEquals("other zero one\n", output);
+	}
+	
+	@Test
+	public void testFloatingArithmetic() throws Exception {
+		// Floating numbers can not be written in the language so the code is built by hand
+		Namespace namespace = new Namespace();
+		InstRef a = new InstRef("a", namespace, Primitives.F64, 1, 0);
+		InstRef b = new InstRef("b", namespace, Primitives.F64, 2, 0);
+		InstRef c = new InstRef("c", namespace, Primitives.F64, 3, 0);
+		InstRef fail = new InstRef("fail", namespace, Primitives.NONE, 4, Reference.LABEL);
+		
+		Procedure main = new Procedure(Procedure.ProcedureType.FUNCTION, new InstRef("main", namespace, Primitives.I32, 0, 0), List.of());
+		List.of(
+			inst(Opcode.MOV, new InstParam.Ref(a), f64(1.5)),
+			inst(Opcode.MOV, new InstParam.Ref(b), f64(0.25)),
+			inst(Opcode.ADD, new InstParam.Ref(a), new InstParam.Ref(b)),
+			inst(Opcode.MUL, new InstParam.Ref(a), f64(2.0)),
+			inst(Opcode.SUB, new InstParam.Ref(a), new InstParam.Ref(b)),
+			
+			// a = (1.5 + 0.25) * 2.0 - 0.25
+			inst(Opcode.MOV, new InstParam.Ref(c), new InstParam.Ref(a)),
+			inst(Opcode.EQ, new InstParam.Ref(c), f64(3.25)),
+			inst(Opcode.JZ, new InstParam.Ref(c), new InstParam.Ref(fail)),
+			inst(Opcode.MOV, new InstParam.Ref(c), new InstParam.Ref(b)),
+			inst(Opcode.ILT, new InstParam.Ref(c), new InstParam.Ref(a)),
+			inst(Opcode.JZ, new InstParam.Ref(c), new InstParam.Ref(fail)),
+			inst(Opcode.MOV, new InstParam.Ref(c), new InstParam.Ref(a)),
+			inst(Opcode.IGT, new InstParam.Ref(c), f64(3.5)),
+			inst(Opcode.JNZ, new InstParam.Ref(c), new InstParam.Ref(fail)),
+			print("ok"),
+			inst(Opcode.RET),
+			inst(Opcode.LABEL, new InstParam.Ref(fail)),
+			print("fail")
+		).forEach(main::addInst);
+		
+		IntermediateFile file = new IntermediateFile();
+		file.addProcedure(main);
+		assertEquals("ok", CompileHelper.run(file));
+	}
+	
+	/**
+	 * Compile a program that can import the standard library and return what it printed
+	 */
+	private static String run(String source) throws Exception {
+		Path dir = Files.createTempDirectory("ample").toRealPath();
+		Path std = dir.resolve("std.amp");
+		Path main = dir.resolve("main.amp");
+		try {
+			Files.copy(new File(CompileHelper.PROJECT, "std.amp").toPath(), std);
+			Files.writeString(main, source);
+			
+			AmpleConfig config = CompileHelper.createConfig(dir.toFile());
+			List<LinkableObject> list = CompileHelper.parse(config, main.toFile());
+			return CompileHelper.run(new AmpleLinker(config).link(list));
+		} finally {
+			Files.deleteIfExists(main);
+			Files.deleteIfExists(std);
+			Files.deleteIfExists(dir);
+		}
+	}
+	
+	private static Inst inst(Opcode opcode, InstParam... params) {
+		Inst inst = new Inst(opcode, null);
+		for (InstParam param : params) {
+			inst.addParam(param);
+		}
+		
+		return inst;
+	}
+	
+	private static Inst print(String text) {
+		return inst(Opcode.INLINE_ASM, new InstParam.Str("int"), new InstParam.Str("print"), new InstParam.Str(text), new InstParam.Num(Primitives.I64, text.length()));
+	}
+	
+	private static InstParam f64(double value) {
+		return new InstParam.Num(Primitives.F64, Double.doubleToRawLongBits(value));
+	}
+}
@@ -0,0 +1,95 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.context.AmpleLexer;
+import me.hardcoded.lexer.GenericLexerContext;
+import me.hardcoded.lexer.SymbolTable;
+import me.hardcoded.lexer.Token;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KeywordTableTest {
+	@Test
+	public void testAmpleKeywords() {
+		Map<String, Token.Type> expected = new LinkedHashMap<>();
+		expected.put("fn", Token.Type.FUNC);
+		expected.put("ret", Token.Type.RETURN);
+		expected.put("if", Token.Type.IF);
+		expected.put("else", Token.Type.ELSE);
+		expected.put("while", Token.Type.WHILE);
+		expected.put("namespace", Token.Type.NAMESPACE);
+		expected.put("true", Token.Type.BOOLEAN);
+		expected.put("using", Token.Type.RESERVED);
+		
+		// Identifiers that are close to a keyword
+		expected.put("f", Token.Type.IDENTIFIER);
+		expected.put("fnn", Token.Type.IDENTIFIER);
+		expected.put("Fn", Token.Type.IDENTIFIER);
+		expected.put("ret_", Token.Type.IDENTIFIER);
+		expected.put("rex", Token.Type.IDENTIFIER);
+		expected.put("whiles", Token.Type.IDENTIFIER);
+		expected.put("_if", Token.Type.IDENTIFIER);
+		
+		for (Map.Entry<String, Token.Type> entry : expected.entrySet()) {
+			// The keyword is placed inside other text to check that only its own characters are hashed
+			String text = "(" + entry.getKey() + ")";
+			GenericLexerContext<Token.Type>.LexerToken token = AmpleLexer.LEXER.nextToken(text, 1);
+			assertEquals(entry.getKey(), entry.getValue(), token.type);
+			assertEquals(entry.getKey(), entry.getKey(), token.content);
+		}
+	}
+	
+	@Test
+	public void testManyKeywords() {
+		Random random = new Random(0x6b6579);
+		Map<String, Integer> keywords = new LinkedHashMap<>();
+		while (keywords.size() < 500) {
+			keywords.put(createWord(random), keywords.size());
+		}
+		
+		GenericLexerContext<Integer> context = new GenericLexerContext<Integer>()
+			.addRule(-1, i -> {
+				i.addRegex("[a-z]+");
+				keywords.forEach((word, type) -> i.addKeyword(type, word));
+			})
+			.toCompiled();
+		
+		for (Map.Entry<String, Integer> entry : keywords.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue(), context.nextToken(entry.getKey()).type);
+		}
+		
+		for (int i = 0; i < 10000; i++) {
+			String word = createWord(random);
+			assertEquals(word, keywords.getOrDefault(word, -1), context.nextToken(word).type);
+		}
+	}
+	
+	@Test
+	public void testSymbolTable() {
+		SymbolTable symbols = new SymbolTable();
+		String text = "alpha beta alpha";
+		
+		String first = symbols.intern(text, 0, 5);
+		String second = symbols.intern(text, 6, 10);
+		assertEquals("alpha", first);
+		assertEquals("beta", second);
+		
+		// Interning the same characters again returns the same instance
+		assertTrue(first == symbols.intern(text, 11, 16));
+		assertTrue(first == symbols.intern(new StringBuilder("alpha"), 0, 5));
+		assertEquals(2, symbols.size());
+	}
+	
+	private static String createWord(Random random) {
+		char[] chars = new char[1 + random.nextInt(4)];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(6));
+		}
+		
+		return new String(chars);
+	}
+}
@@ -0,0 +1,116 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.context.AmpleLexer;
+import me.hardcoded.lexer.GenericLexerContext;
+import me.hardcoded.lexer.Token;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LexerDfaTest {
+	private static final Path PROJECT = Path.of("src/main/resources/project");
+	
+	// Fragments that are likely to join, split or unterminate tokens
+	private static final String[] FRAGMENTS = {
+		"a", "fn", "ret", "if", "while", "_x1", "0", "12", "0x1f", "0b1", "0x", "u", "U", "L", "ul", "f", "d", "1.5", ".",
+		"...", ":", "::", " ", "\n", "\r", "\t", "/", "*", "/*", "*/", "//", "\"", "'", "\\", "(", ")", "[", "]", "{", "}",
+		";", "=", "==", "!", "!=", "<", "<<", "<=", ">", ">>", ">=", "+", "-", "&", "&&", "|", "||", "^", "~", "%", "?",
+		"@link", "@", ",", "#", "é", " "
+	};
+	
+	@Test
+	public void testProjectSources() throws IOException {
+		GenericLexerContext<Token.Type> regex = AmpleLexer.LEXER.toImmutable();
+		
+		for (String name : new String[] { "src/std.amp", "src/test.amp", "src/src.amp", "link_test.amp" }) {
+			String text = Files.readString(PROJECT.resolve(name));
+			assertSameTokens(name, regex, text);
+		}
+	}
+	
+	@Test
+	public void testRandomText() {
+		GenericLexerContext<Token.Type> regex = AmpleLexer.LEXER.toImmutable();
+		Random random = new Random(0xdfa);
+		
+		for (int run = 0; run < 2000; run++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = random.nextInt(12); i >= 0; i--) {
+				sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			}
+			
+			assertSameTokens("run " + run, regex, sb.toString());
+		}
+	}
+	
+	@Test
+	public void testCustomRules() {
+		GenericLexerContext<String> context = new GenericLexerContext<String>()
+			.addRule("comment", i -> i.addMultiline("<!--", "-->"))
+			.addRule("string", i -> i.addSingleline("'", "\\", "'"))
+			.addRule("raw", i -> i.addSingleline("`", "`"))
+			.addRule("number", i -> i.addRegexes("[0-9]+", "[0-9]*\\.[0-9]+([eE][+-]?[0-9]+)?"))
+			.addRule("word", i -> i.addRegex("[a-z]+").addKeyword("keyword", "let"))
+			.addRule("symbol", i -> i.addStrings("<", "<!", "-", "--", ".", "'"));
+		
+		GenericLexerContext<String> regex = context.toImmutable();
+		GenericLexerContext<String> compiled = context.toCompiled();
+		String[] inputs = {
+			"let x<!-- a -- b -->1.5e3", "<!-- unterminated", "'a\\'b' 'c\nd'", "'\\\\' '", "`raw\\`", ".5 5. -.e1",
+			"letter let lets", "<!-<!--->", "--->", ""
+		};
+		
+		for (String input : inputs) {
+			assertSameTokens(input, regex, compiled, input);
+		}
+	}
+	
+	@Test
+	public void testAlternation() {
+		GenericLexerContext<String> context = new GenericLexerContext<String>()
+			.addRule("word", i -> i.addRegex("a|ab"))
+			.addRule("other", i -> i.addRegex("[bc]"));
+		
+		GenericLexerContext<String> regex = context.toImmutable();
+		GenericLexerContext<String> compiled = context.toCompiled();
+		
+		// Java regex takes the first alternative that matches and the compiled context takes the longest
+		assertEquals(1, regex.nextToken("abc", 0).length);
+		assertEquals(2, compiled.nextToken("abc", 0).length);
+		
+		// Both contexts match the same tokens when the longer alternative is written first
+		GenericLexerContext<String> ordered = new GenericLexerContext<String>()
+			.addRule("word", i -> i.addRegex("ab|a"))
+			.addRule("other", i -> i.addRegex("[bc]"));
+		
+		for (String input : new String[] { "abc", "aab", "acab", "ba" }) {
+			assertSameTokens(input, ordered.toImmutable(), ordered.toCompiled(), input);
+		}
+	}
+	
+	private static void assertSameTokens(String message, GenericLexerContext<Token.Type> regex, String text) {
+		assertSameTokens(message, regex, AmpleLexer.LEXER, text);
+	}
+	
+	private static <T> void assertSameTokens(String message, GenericLexerContext<T> expected, GenericLexerContext<T> actual, String text) {
+		GenericLexerContext<T>.LexerCursor a = expected.cursor(text);
+		GenericLexerContext<T>.LexerCursor b = actual.cursor(text);
+		
+		for (int token = 0; ; token++) {
+			boolean next = a.next();
+			assertEquals(message + " match of token " + token, next, b.next());
+			assertEquals(message + " offset of token " + token, a.getOffset(), b.getOffset());
+			if (!next) {
+				break;
+			}
+			
+			assertEquals(message + " type of token " + token, a.getType(), b.getType());
+			assertEquals(message + " length of token " + token, a.getLength(), b.getLength());
+		}
+	}
+}
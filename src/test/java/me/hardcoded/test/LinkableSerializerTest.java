@@ -0,0 +1,154 @@
+package me.hardcoded.test;
+
+import me.hardcoded.compiler.impl.ISyntaxPos;
+import me.hardcoded.compiler.parser.LinkableObject;
+import me.hardcoded.compiler.parser.serial.LinkableDeserializer;
+import me.hardcoded.compiler.parser.serial.LinkableSerializer;
+import me.hardcoded.compiler.parser.stat.FuncStat;
+import me.hardcoded.compiler.parser.stat.NamespaceStat;
+import me.hardcoded.compiler.parser.stat.Stat;
+import me.hardcoded.compiler.parser.type.ReferenceSyntax;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LinkableSerializerTest {
+	@Test
+	public void testRoundTrip() throws Exception {
+		for (LinkableObject obj : parseProject()) {
+			byte[] bytes = LinkableSerializer.serializeLinkable(obj);
+			LinkableObject loaded = LinkableDeserializer.deserializeLinkable(bytes);
+			
+			assertEquals(obj.getFile(), loaded.getFile());
+			assertEquals(obj.getChecksum(), loaded.getChecksum());
+			assertEquals(obj.getImports(), loaded.getImports());
+			assertEquals(obj.getChecksum(), LinkableDeserializer.readChecksum(ByteBuffer.wrap(bytes)));
+			assertArrayEquals(bytes, LinkableSerializer.serializeLinkable(loaded));
+		}
+	}
+	
+	@Test
+	public void testSyntaxPositions() throws Exception {
+		for (LinkableObject obj : parseProject()) {
+			LinkableObject loaded = LinkableDeserializer.deserializeLinkable(LinkableSerializer.serializeLinkable(obj));
+			
+			// Positions are delta encoded so every position of the object is compared
+			List<String> expected = new ArrayList<>();
+			List<String> actual = new ArrayList<>();
+			collectPositions(obj, expected);
+			collectPositions(loaded, actual);
+			
+			assertTrue(expected.size() > 10);
+			assertEquals(obj.getFile().toString(), expected, actual);
+		}
+	}
+	
+	@Test
+	public void testLazyBodies() throws Exception {
+		for (LinkableObject obj : parseProject()) {
+			byte[] bytes = LinkableSerializer.serializeLinkable(obj);
+			LinkableObject loaded = LinkableDeserializer.deserializeLinkable(bytes);
+			
+			List<FuncStat> functions = new ArrayList<>();
+			collectFunctions(loaded.getProgram(), functions);
+			assertTrue(loaded.getProgram() == loaded.getProgram());
+			
+			// Bodies are read in a different order than they were written and from multiple threads
+			Collections.reverse(functions);
+			functions.parallelStream().forEach(FuncStat::getBody);
+			for (FuncStat func : functions) {
+				assertNotNull(func.getBody());
+				assertTrue(func.getBody() == func.getBody());
+			}
+			
+			assertArrayEquals(bytes, LinkableSerializer.serializeLinkable(loaded));
+		}
+	}
+	
+	private static List<LinkableObject> parseProject() throws Exception {
+		return CompileHelper.parse(CompileHelper.createConfig(CompileHelper.PROJECT), new File(CompileHelper.PROJECT, "test.amp"));
+	}
+	
+	private static void collectFunctions(Stat stat, List<FuncStat> functions) {
+		for (Stat element : getChildren(stat)) {
+			if (element instanceof FuncStat func) {
+				functions.add(func);
+			} else if (element instanceof NamespaceStat) {
+				collectFunctions(element, functions);
+			}
+		}
+	}
+	
+	private static void collectPositions(LinkableObject obj, List<String> positions) {
+		for (ReferenceSyntax syntax : obj.getExportedReferences()) {
+			positions.add("export " + syntax + " " + syntax.getSyntaxPosition().getStartPosition() + " " + syntax.getSyntaxPosition().getEndPosition());
+		}
+		
+		for (ReferenceSyntax syntax : obj.getImportedReferences()) {
+			positions.add("import " + syntax + " " + syntax.getSyntaxPosition().getStartPosition() + " " + syntax.getSyntaxPosition().getEndPosition());
+		}
+		
+		collectPositions(obj.getProgram(), positions);
+	}
+	
+	private static void collectPositions(Stat stat, List<String> positions) {
+		ISyntaxPos pos = stat.getSyntaxPosition();
+		positions.add(stat.getTreeType() + " " + pos.getStartPosition() + " " + pos.getEndPosition());
+		
+		for (Stat child : getChildren(stat)) {
+			collectPositions(child, positions);
+		}
+	}
+	
+	/**
+	 * Returns the statements and expressions of the fields of a statement
+	 */
+	private static List<Stat> getChildren(Stat stat) {
+		List<Stat> children = new ArrayList<>();
+		if (stat instanceof FuncStat func) {
+			// The body is read lazily
+			if (func.getBody() != null) {
+				children.add(func.getBody());
+			}
+			
+			return children;
+		}
+		
+		for (Class<?> clazz = stat.getClass(); clazz != Stat.class; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				
+				field.setAccessible(true);
+				Object value;
+				try {
+					value = field.get(stat);
+				} catch (IllegalAccessException e) {
+					throw new RuntimeException(e);
+				}
+				
+				if (value instanceof Stat child) {
+					children.add(child);
+				} else if (value instanceof Collection<?> collection) {
+					for (Object element : collection) {
+						if (element instanceof Stat child) {
+							children.add(child);
+						}
+					}
+				}
+			}
+		}
+		
+		return children;
+	}
+}
@@ -0,0 +1,122 @@
+package me.hardcoded.test;
+
+import me.hardcoded.lexer.LexerTokenizer;
+import me.hardcoded.lexer.TokenBuffer;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RelexTest {
+	private static final String SOURCE = """
+		@link "std.amp";
+
+		/* Multiline
+		   comment */
+		fn (export) test (u8[]: str, i64: len, ...[]: args) : i64 {
+			// Single line comment
+			i64: a = 0x1fL + 12ul - 0b101u * 3;
+			u8: c = '\\'';
+			f32: f = 1.5f / 2.25;
+			if (a <= len && c != 'x') {
+				ret std::strlen("text \\" with escapes");
+			}
+
+			ret a << 2 >> 1;
+		}
+		""";
+	
+	// Fragments that are likely to join, split or unterminate tokens
+	private static final String[] FRAGMENTS = {
+		"a", "fn", "ret", "if", "_x1", "0", "12", "0x1f", "0b1", "u", "L", "ul", "f", "1.5", ".", "...",
+		":", "::", " ", "\n", "\t", "/", "*", "/*", "*/", "//", "\"", "'", "\\", "(", ")", "{", "}",
+		";", "=", "==", "!", "<", "<<", "<=", ">", ">>", "+", "-", "&", "&&", "@link", ","
+	};
+	
+	@Test
+	public void testRandomEdits() {
+		Random random = new Random(0x5eed);
+		
+		for (int run = 0; run < 300; run++) {
+			String text = SOURCE;
+			TokenBuffer buffer = LexerTokenizer.tokenizeIncremental("test", text);
+			
+			// Edits are applied to the result of the previous edit so reused lookaheads are checked too
+			for (int edit = 0; edit < 25; edit++) {
+				int offset = random.nextInt(text.length() + 1);
+				int removed = random.nextInt(Math.min(6, text.length() - offset) + 1);
+				String inserted = createText(random);
+				String edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+				String message = "run " + run + " edit " + edit + " (offset=" + offset + ", removed=" + removed + ", inserted='" + inserted + "')";
+				
+				TokenBuffer expected = tokenize(edited);
+				if (expected == null) {
+					try {
+						LexerTokenizer.relex(buffer, offset, removed, inserted);
+					} catch (RuntimeException e) {
+						// Both failed to tokenize the text
+						break;
+					}
+					
+					fail(message + " relex accepted text that could not be tokenized");
+				}
+				
+				TokenBuffer actual = LexerTokenizer.relex(buffer, offset, removed, inserted);
+				assertSameTokens(message, expected, actual);
+				
+				text = edited;
+				buffer = actual;
+			}
+		}
+	}
+	
+	@Test
+	public void testEditChangesLaterTokens() {
+		String text = "i32: a = 1; /* b */ i32: c = 2;";
+		TokenBuffer buffer = LexerTokenizer.tokenizeIncremental("test", text);
+		
+		// Opening a comment turns the rest of the text into whitespace
+		String inserted = "/*";
+		int offset = text.indexOf("i32: a");
+		TokenBuffer actual = LexerTokenizer.relex(buffer, offset, 0, inserted);
+		TokenBuffer expected = LexerTokenizer.tokenizeIncremental("test", text.substring(0, offset) + inserted + text.substring(offset));
+		assertSameTokens("open comment", expected, actual);
+		
+		// Removing it again restores the original tokens
+		TokenBuffer restored = LexerTokenizer.relex(actual, offset, inserted.length(), "");
+		assertSameTokens("close comment", buffer, restored);
+	}
+	
+	private static String createText(Random random) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(4); i > 0; i--) {
+			sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the tokens of the text or {@code null} if the text could not be tokenized
+	 */
+	private static TokenBuffer tokenize(String text) {
+		try {
+			return LexerTokenizer.tokenizeIncremental("test", text);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+	
+	private static void assertSameTokens(String message, TokenBuffer expected, TokenBuffer actual) {
+		assertEquals(message + " text", expected.getText().toString(), actual.getText().toString());
+		assertEquals(message + " size", expected.size(), actual.size());
+		
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(message + " type of token " + i, expected.getType(i), actual.getType(i));
+			assertEquals(message + " start of token " + i, expected.getStart(i), actual.getStart(i));
+			assertEquals(message + " end of token " + i, expected.getEnd(i), actual.getEnd(i));
+			assertEquals(message + " lookahead of token " + i, expected.getLookahead(i), actual.getLookahead(i));
+		}
+	}
+}